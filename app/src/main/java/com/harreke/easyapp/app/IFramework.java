@@ -10,9 +10,13 @@ import android.view.ViewGroup;
 
 import com.harreke.easyapp.common.interf.IDestroyable;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.FileExecutor;
 import com.harreke.easyapp.network.executor.ImageExecutor;
+import com.harreke.easyapp.network.executor.ModelExecutor;
 import com.harreke.easyapp.network.executor.StringExecutor;
 
+import java.lang.reflect.Type;
+
 /**
  由 Harreke（harreke@live.cn） 创建于 2014/07/24
 
@@ -68,8 +72,37 @@ public interface IFramework extends IToaster, IIntent {
 
     BinaryExecutor obtainBinaryExecutor(@NonNull String tag);
 
+    /**
+     获得将响应流式写入文件的执行器，支持断点续传
+
+     @param tag 执行器标签
+
+     @return 执行器
+     */
+    FileExecutor obtainFileExecutor(@NonNull String tag);
+
     ImageExecutor obtainImageExecutor(@NonNull String tag);
 
+    /**
+     获得直接将响应解析为指定类型的执行器，解析在工作线程中完成
+
+     @param tag 执行器标签
+     @param modelClass 目标类型
+
+     @return 执行器
+     */
+    <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Class<MODEL> modelClass);
+
+    /**
+     获得直接将响应解析为指定泛型类型的执行器，解析在工作线程中完成
+
+     @param tag 执行器标签
+     @param modelType 目标类型，如TypeReference.getType()
+
+     @return 执行器
+     */
+    <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Type modelType);
+
     StringExecutor obtainStringExecutor(@NonNull String tag);
 
     /**
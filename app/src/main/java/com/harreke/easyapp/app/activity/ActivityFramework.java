@@ -29,10 +29,14 @@ import com.harreke.easyapp.common.interf.IDestroyable;
 import com.harreke.easyapp.common.toaster.Toaster;
 import com.harreke.easyapp.injection.Injection;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.FileExecutor;
 import com.harreke.easyapp.network.executor.ImageExecutor;
+import com.harreke.easyapp.network.executor.ModelExecutor;
 import com.harreke.easyapp.network.executor.StringExecutor;
 import com.harreke.easyapp.util.ConnectionUtil;
 
+import java.lang.reflect.Type;
+
 /**
  由 Harreke（harreke@live.cn） 创建于 2014/07/24
 
@@ -191,11 +195,26 @@ public abstract class ActivityFramework extends AppCompatActivity
         return mActivityFrameworkHelper.obtainBinaryExecutor(tag);
     }
 
+    @Override
+    public FileExecutor obtainFileExecutor(@NonNull String tag) {
+        return mActivityFrameworkHelper.obtainFileExecutor(tag);
+    }
+
     @Override
     public ImageExecutor obtainImageExecutor(@NonNull String tag) {
         return mActivityFrameworkHelper.obtainImageExecutor(tag);
     }
 
+    @Override
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Class<MODEL> modelClass) {
+        return mActivityFrameworkHelper.obtainModelExecutor(tag, modelClass);
+    }
+
+    @Override
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Type modelType) {
+        return mActivityFrameworkHelper.obtainModelExecutor(tag, modelType);
+    }
+
     @Override
     public StringExecutor obtainStringExecutor(@NonNull String tag) {
         return mActivityFrameworkHelper.obtainStringExecutor(tag);
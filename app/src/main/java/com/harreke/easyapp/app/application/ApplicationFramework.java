@@ -1,6 +1,7 @@
 package com.harreke.easyapp.app.application;
 
 import android.app.Application;
+import android.support.annotation.Nullable;
 
 import com.harreke.easyapp.EasyNetwork;
 import com.harreke.easyapp.Util;
@@ -15,6 +16,16 @@ public class ApplicationFramework extends Application {
         return mInstance;
     }
 
+    /**
+     获得启动时需要预热连接的主机，子类覆盖后在启动时由{@link EasyNetwork#preconnect(String...)}在后台预热
+
+     @return 主机，为null时不预热
+     */
+    @Nullable
+    protected String[] getPreconnectHosts() {
+        return null;
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -23,5 +34,9 @@ public class ApplicationFramework extends Application {
 
         Util.init(this);
         EasyNetwork.init(this);
+        String[] preconnectHosts = getPreconnectHosts();
+        if (preconnectHosts != null && preconnectHosts.length > 0) {
+            EasyNetwork.preconnect(preconnectHosts);
+        }
     }
 }
\ No newline at end of file
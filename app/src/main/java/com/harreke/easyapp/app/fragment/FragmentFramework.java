@@ -17,9 +17,13 @@ import com.harreke.easyapp.app.IFramework;
 import com.harreke.easyapp.app.helper.FragmentFrameworkHelper;
 import com.harreke.easyapp.common.interf.IDestroyable;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.FileExecutor;
 import com.harreke.easyapp.network.executor.ImageExecutor;
+import com.harreke.easyapp.network.executor.ModelExecutor;
 import com.harreke.easyapp.network.executor.StringExecutor;
 
+import java.lang.reflect.Type;
+
 /**
  由 Harreke（harreke@live.cn） 创建于 2014/07/24
 
@@ -113,11 +117,26 @@ public abstract class FragmentFramework extends Fragment implements IFramework,
         return mFragmentFrameworkHelper.obtainBinaryExecutor(tag);
     }
 
+    @Override
+    public FileExecutor obtainFileExecutor(@NonNull String tag) {
+        return mFragmentFrameworkHelper.obtainFileExecutor(tag);
+    }
+
     @Override
     public ImageExecutor obtainImageExecutor(@NonNull String tag) {
         return mFragmentFrameworkHelper.obtainImageExecutor(tag);
     }
 
+    @Override
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Class<MODEL> modelClass) {
+        return mFragmentFrameworkHelper.obtainModelExecutor(tag, modelClass);
+    }
+
+    @Override
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Type modelType) {
+        return mFragmentFrameworkHelper.obtainModelExecutor(tag, modelType);
+    }
+
     @Override
     public StringExecutor obtainStringExecutor(@NonNull String tag) {
         return mFragmentFrameworkHelper.obtainStringExecutor(tag);
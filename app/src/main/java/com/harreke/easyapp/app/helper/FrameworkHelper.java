@@ -12,12 +12,17 @@ import com.harreke.easyapp.common.interf.IDestroyable;
 import com.harreke.easyapp.common.singleton.CommonHandler;
 import com.harreke.easyapp.injection.Injection;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.FileExecutor;
 import com.harreke.easyapp.network.executor.ImageExecutor;
+import com.harreke.easyapp.network.executor.ModelExecutor;
 import com.harreke.easyapp.network.executor.RequestExecutor;
 import com.harreke.easyapp.network.executor.StringExecutor;
 import com.orhanobut.logger.Logger;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.WeakHashMap;
 
 /**
@@ -28,6 +33,10 @@ public class FrameworkHelper {
     private WeakHashMap<Integer, Dialog> mDialogRefMap = new WeakHashMap<>();
     private WeakHashMap<String, RequestExecutor> mExecutorRefMap = new WeakHashMap<>();
     private WeakReference<IFramework> mFrameworkRef;
+    /**
+     图片执行器借出的租约需要在销毁时释放，强引用保存以免执行器在销毁前被回收而泄漏租约
+     */
+    private Set<ImageExecutor> mImageExecutorSet = new HashSet<>();
     private MeasureContent mMeasureContent = null;
     private MeasureContent.OnMeasuredListener mMeasureListener = new MeasureContent.OnMeasuredListener() {
         @Override
@@ -73,11 +82,16 @@ public class FrameworkHelper {
         }
         mRunnableRefMap.clear();
         for (RequestExecutor requestExecutor : mExecutorRefMap.values()) {
-            if (requestExecutor != null) {
-                requestExecutor.cancel();
+            if (requestExecutor != null && !(requestExecutor instanceof ImageExecutor)) {
+                requestExecutor.recycle();
             }
         }
         mExecutorRefMap.clear();
+        // 回收图片执行器时同时释放其借出的图片租约
+        for (ImageExecutor imageExecutor : mImageExecutorSet) {
+            imageExecutor.recycle();
+        }
+        mImageExecutorSet.clear();
     }
 
     public View findViewById(int viewId) {
@@ -112,14 +126,31 @@ public class FrameworkHelper {
             if (requestExecutor instanceof BinaryExecutor) {
                 return (BinaryExecutor) requestExecutor;
             } else {
-                mExecutorRefMap.remove(tag);
+                recycleExecutor(tag, requestExecutor);
             }
         }
         requestExecutor = EasyNetwork.createBinaryExecutor();
         mExecutorRefMap.put(tag, requestExecutor);
+        requestExecutor.setDemoted(!mResume);
         return (BinaryExecutor) requestExecutor;
     }
 
+    public FileExecutor obtainFileExecutor(@NonNull String tag) {
+        RequestExecutor requestExecutor = mExecutorRefMap.get(tag);
+        if (requestExecutor != null) {
+            requestExecutor.destroy();
+            if (requestExecutor instanceof FileExecutor) {
+                return (FileExecutor) requestExecutor;
+            } else {
+                recycleExecutor(tag, requestExecutor);
+            }
+        }
+        requestExecutor = EasyNetwork.createFileExecutor();
+        mExecutorRefMap.put(tag, requestExecutor);
+        requestExecutor.setDemoted(!mResume);
+        return (FileExecutor) requestExecutor;
+    }
+
     public ImageExecutor obtainImageExecutor(@NonNull String tag) {
         RequestExecutor requestExecutor = mExecutorRefMap.get(tag);
         if (requestExecutor != null) {
@@ -127,12 +158,39 @@ public class FrameworkHelper {
             if (requestExecutor instanceof ImageExecutor) {
                 return (ImageExecutor) requestExecutor;
             } else {
-                mExecutorRefMap.remove(tag);
+                recycleExecutor(tag, requestExecutor);
             }
         }
-        requestExecutor = EasyNetwork.createImageExecutor();
-        mExecutorRefMap.put(tag, requestExecutor);
-        return (ImageExecutor) requestExecutor;
+        ImageExecutor imageExecutor = EasyNetwork.createImageExecutor();
+        mExecutorRefMap.put(tag, imageExecutor);
+        mImageExecutorSet.add(imageExecutor);
+        imageExecutor.setDemoted(!mResume);
+        return imageExecutor;
+    }
+
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Class<MODEL> modelClass) {
+        return this.<MODEL>obtainModelExecutor(tag).model(modelClass);
+    }
+
+    public <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag, @NonNull Type modelType) {
+        return this.<MODEL>obtainModelExecutor(tag).model(modelType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <MODEL> ModelExecutor<MODEL> obtainModelExecutor(@NonNull String tag) {
+        RequestExecutor requestExecutor = mExecutorRefMap.get(tag);
+        if (requestExecutor != null) {
+            requestExecutor.destroy();
+            if (requestExecutor instanceof ModelExecutor) {
+                return (ModelExecutor<MODEL>) requestExecutor;
+            } else {
+                recycleExecutor(tag, requestExecutor);
+            }
+        }
+        ModelExecutor<MODEL> modelExecutor = EasyNetwork.createModelExecutor();
+        mExecutorRefMap.put(tag, modelExecutor);
+        modelExecutor.setDemoted(!mResume);
+        return modelExecutor;
     }
 
     public StringExecutor obtainStringExecutor(@NonNull String tag) {
@@ -143,11 +201,12 @@ public class FrameworkHelper {
             if (requestExecutor instanceof StringExecutor) {
                 return (StringExecutor) requestExecutor;
             } else {
-                mExecutorRefMap.remove(tag);
+                recycleExecutor(tag, requestExecutor);
             }
         }
         requestExecutor = EasyNetwork.createStringExecutor();
         mExecutorRefMap.put(tag, requestExecutor);
+        requestExecutor.setDemoted(!mResume);
         return (StringExecutor) requestExecutor;
     }
 
@@ -171,10 +230,12 @@ public class FrameworkHelper {
     public void onPause() {
         mResume = false;
         mPauseTime = System.currentTimeMillis();
+        setExecutorsDemoted(true);
     }
 
     public void onResume() {
         mResume = true;
+        setExecutorsDemoted(false);
         IFramework framework = getFramework();
         if (isViewInitialized() && framework != null) {
             if (mRefreshTime >= 0 && mPauseTime > 0) {
@@ -197,6 +258,14 @@ public class FrameworkHelper {
         registerRunnable(runnable);
     }
 
+    private void recycleExecutor(@NonNull String tag, @NonNull RequestExecutor requestExecutor) {
+        requestExecutor.recycle();
+        mExecutorRefMap.remove(tag);
+        if (requestExecutor instanceof ImageExecutor) {
+            mImageExecutorSet.remove(requestExecutor);
+        }
+    }
+
     public final void registerDestroyable(@NonNull IDestroyable destroyable) {
         mDestroyableRefMap.put(destroyable.hashCode(), destroyable);
     }
@@ -214,6 +283,17 @@ public class FrameworkHelper {
         mRunnableRefMap.remove(runnable.hashCode());
     }
 
+    /**
+     界面不可见时降低所有请求的优先级，恢复可见时还原
+     */
+    private void setExecutorsDemoted(boolean demoted) {
+        for (RequestExecutor requestExecutor : mExecutorRefMap.values()) {
+            if (requestExecutor != null) {
+                requestExecutor.setDemoted(demoted);
+            }
+        }
+    }
+
     void setMeasureContent(MeasureContent measureContent) {
         mMeasureContent = measureContent;
     }
@@ -5,46 +5,155 @@ import android.support.annotation.NonNull;
 
 import com.harreke.easyapp.easynetwork.fresco.FrescoImageExecutorCreator;
 import com.harreke.easyapp.easynetwork.okhttp.OkHttpBinaryExecutorCreator;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpFileExecutorCreator;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpModelExecutorCreator;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpNetworkMetrics;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpPreconnector;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpPrefetcher;
+import com.harreke.easyapp.easynetwork.okhttp.OkHttpRequestOutbox;
 import com.harreke.easyapp.easynetwork.okhttp.OkHttpStringExecutorCreator;
+import com.harreke.easyapp.network.INetworkMetrics;
+import com.harreke.easyapp.network.IPrefetcher;
+import com.harreke.easyapp.network.IRequestOutbox;
 import com.harreke.easyapp.network.creator.IExecutorCreator;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.FileExecutor;
 import com.harreke.easyapp.network.executor.ImageExecutor;
+import com.harreke.easyapp.network.executor.ModelExecutor;
 import com.harreke.easyapp.network.executor.StringExecutor;
 
+import java.lang.reflect.Type;
+
 /**
  由 huoqisheng 于 2017/3/30 创建
  */
 public class EasyNetwork {
+    private static Application mApplication;
     private static IExecutorCreator<BinaryExecutor> mBinaryExecutorCreator;
+    private static IExecutorCreator<FileExecutor> mFileExecutorCreator;
     private static IExecutorCreator<ImageExecutor> mImageExecutorCreator;
+    private static IExecutorCreator<ModelExecutor<?>> mModelExecutorCreator;
+    private static IPrefetcher mPrefetcher;
+    private static IRequestOutbox mRequestOutbox;
     private static IExecutorCreator<StringExecutor> mStringExecutorCreator;
 
     public static BinaryExecutor createBinaryExecutor() {
         return mBinaryExecutorCreator.create();
     }
 
+    public static FileExecutor createFileExecutor() {
+        return mFileExecutorCreator.create();
+    }
+
     public static ImageExecutor createImageExecutor() {
         return mImageExecutorCreator.create();
     }
 
+    public static <MODEL> ModelExecutor<MODEL> createModelExecutor(@NonNull Class<MODEL> modelClass) {
+        return EasyNetwork.<MODEL>createModelExecutor().model(modelClass);
+    }
+
+    /**
+     创建解析为泛型类型的执行器
+
+     @param modelType 目标类型，如TypeReference.getType()
+
+     @return 执行器
+     */
+    public static <MODEL> ModelExecutor<MODEL> createModelExecutor(@NonNull Type modelType) {
+        return EasyNetwork.<MODEL>createModelExecutor().model(modelType);
+    }
+
+    /**
+     创建未指定目标类型的执行器，执行前需通过{@link ModelExecutor#model(Class)}指定目标类型
+
+     @return 执行器
+     */
+    @SuppressWarnings("unchecked")
+    public static <MODEL> ModelExecutor<MODEL> createModelExecutor() {
+        return (ModelExecutor<MODEL>) mModelExecutorCreator.create();
+    }
+
     public static StringExecutor createStringExecutor() {
         return mStringExecutorCreator.create();
     }
 
+    /**
+     获得网络耗时统计，默认关闭
+
+     @return 网络耗时统计
+     */
+    public static INetworkMetrics getNetworkMetrics() {
+        return OkHttpNetworkMetrics.getInstance();
+    }
+
+    /**
+     获得预取器，预取的结果会被之后相同的GET请求直接使用
+
+     @return 预取器
+     */
+    public static IPrefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
+    /**
+     获得离线请求队列，加入的请求会在网络可用时发送
+
+     队列在第一次调用时创建，之前未发送完的请求从此时开始继续发送
+
+     @return 离线请求队列
+     */
+    public static synchronized IRequestOutbox getRequestOutbox() {
+        if (mRequestOutbox == null) {
+            mRequestOutbox = new OkHttpRequestOutbox(mApplication);
+        }
+
+        return mRequestOutbox;
+    }
+
     public static void init(@NonNull Application application) {
+        mApplication = application;
         mImageExecutorCreator = new FrescoImageExecutorCreator(application);
         mStringExecutorCreator = new OkHttpStringExecutorCreator(application);
         mBinaryExecutorCreator = new OkHttpBinaryExecutorCreator(application);
+        mModelExecutorCreator = new OkHttpModelExecutorCreator(application);
+        mFileExecutorCreator = new OkHttpFileExecutorCreator(application);
+        mPrefetcher = new OkHttpPrefetcher(application);
+    }
+
+    /**
+     在后台预热到主机的连接（DNS解析、TCP与TLS握手），适合在应用启动时调用，需要在{@link #init(Application)}之后调用
+
+     @param hosts 主机，可以是完整链接或只有域名
+     */
+    public static void preconnect(@NonNull String... hosts) {
+        OkHttpPreconnector.preconnect(hosts);
     }
 
     public static void setBinaryExecutorCreator(@NonNull IExecutorCreator<BinaryExecutor> binaryExecutorCreator) {
         mBinaryExecutorCreator = binaryExecutorCreator;
     }
 
+    public static void setFileExecutorCreator(@NonNull IExecutorCreator<FileExecutor> fileExecutorCreator) {
+        mFileExecutorCreator = fileExecutorCreator;
+    }
+
     public static void setImageExecutorCreator(@NonNull IExecutorCreator<ImageExecutor> imageExecutorCreator) {
         mImageExecutorCreator = imageExecutorCreator;
     }
 
+    public static void setModelExecutorCreator(@NonNull IExecutorCreator<ModelExecutor<?>> modelExecutorCreator) {
+        mModelExecutorCreator = modelExecutorCreator;
+    }
+
+    public static void setPrefetcher(@NonNull IPrefetcher prefetcher) {
+        mPrefetcher = prefetcher;
+    }
+
+    public static synchronized void setRequestOutbox(@NonNull IRequestOutbox requestOutbox) {
+        mRequestOutbox = requestOutbox;
+    }
+
     public static void setStringExecutorCreator(@NonNull IExecutorCreator<StringExecutor> stringExecutorCreator) {
         mStringExecutorCreator = stringExecutorCreator;
     }
@@ -0,0 +1,64 @@
+package com.harreke.easyapp.easynetwork.fresco;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.image.CloseableBitmap;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.harreke.easyapp.network.IBitmapLease;
+
+/**
+ 由 huoqisheng 于 2017/5/2 创建
+
+ 持有Fresco图片引用的租约
+
+ Fresco的图片引用是引用计数的，租约持有一个独立的引用，释放租约即关闭该引用，不影响其他持有者
+ */
+class FrescoBitmapLease implements IBitmapLease {
+    private CloseableReference<CloseableImage> mImageRef;
+
+    private FrescoBitmapLease(@NonNull CloseableReference<CloseableImage> imageRef) {
+        mImageRef = imageRef;
+    }
+
+    /**
+     为图片引用创建租约，引用会被复制，调用者仍需关闭自己的引用
+
+     @param imageRef 图片引用
+
+     @return 租约，引用无效或不是位图时为null
+     */
+    @Nullable
+    static FrescoBitmapLease create(@Nullable CloseableReference<CloseableImage> imageRef) {
+        CloseableReference<CloseableImage> clonedRef = CloseableReference.cloneOrNull(imageRef);
+
+        if (clonedRef == null) {
+            return null;
+        }
+        if (!(clonedRef.get() instanceof CloseableBitmap)) {
+            CloseableReference.closeSafely(clonedRef);
+            return null;
+        }
+
+        return new FrescoBitmapLease(clonedRef);
+    }
+
+    @Nullable
+    @Override
+    public synchronized Bitmap get() {
+        return mImageRef == null ? null : ((CloseableBitmap) mImageRef.get()).getUnderlyingBitmap();
+    }
+
+    @Override
+    public void release() {
+        CloseableReference<CloseableImage> imageRef;
+
+        synchronized (this) {
+            imageRef = mImageRef;
+            mImageRef = null;
+        }
+        CloseableReference.closeSafely(imageRef);
+    }
+}
@@ -2,8 +2,11 @@ package com.harreke.easyapp.easynetwork.fresco;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.drawable.Animatable;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
 import com.facebook.common.executors.UiThreadImmediateExecutorService;
@@ -11,19 +14,42 @@ import com.facebook.common.references.CloseableReference;
 import com.facebook.datasource.BaseDataSubscriber;
 import com.facebook.datasource.DataSource;
 import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.controller.BaseControllerListener;
 import com.facebook.drawee.interfaces.DraweeController;
 import com.facebook.drawee.view.DraweeView;
+import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.common.ImageDecodeOptionsBuilder;
+import com.facebook.imagepipeline.common.Priority;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.core.ImagePipeline;
 import com.facebook.imagepipeline.image.CloseableBitmap;
 import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.ImageInfo;
 import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+import com.harreke.easyapp.network.IBitmapLease;
 import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.RequestPriority;
 import com.harreke.easyapp.network.executor.ImageExecutor;
 
 /**
  由huoqisheng于2016/7/7创建
+
+ 目标为DraweeView时只由DraweeController订阅图片管道，结果通过ControllerListener回调，同一张图片只解码一次；
+ 其他ImageView通过DataSource获取解码后的图片再设置。
+ 设置了{@link #leaseCallback(IRequestCallback)}时返回持有图片引用的{@link FrescoBitmapLease}，DraweeView的图片引用从内存缓存中取得。
+ 图片按ImageView测量后的尺寸（不超过{@link #maxSize(int, int)}）缩小解码，ImageView尚未测量时等到绘制前再开始加载
  */
 public class FrescoImageExecutor extends ImageExecutor {
     private DataSource<CloseableReference<CloseableImage>> mDataSource;
+    /**
+     当前DraweeView加载的监听器，取消后置为null，之前的监听器不再回调
+     */
+    private DraweeListener mDraweeListener;
+    /**
+     等待ImageView测量的监听器，没有等待时为null
+     */
+    private PreDrawListener mPreDrawListener;
 
     @Override
     public void cancel() {
@@ -31,6 +57,11 @@ public class FrescoImageExecutor extends ImageExecutor {
             mDataSource.close();
             mDataSource = null;
         }
+        mDraweeListener = null;
+        if (mPreDrawListener != null) {
+            mPreDrawListener.remove();
+            mPreDrawListener = null;
+        }
     }
 
     private void checkAndSetImage(Bitmap bitmap) {
@@ -52,62 +83,218 @@ public class FrescoImageExecutor extends ImageExecutor {
         }
     }
 
+    private static Priority getFrescoPriority(@NonNull RequestPriority priority) {
+        switch (priority) {
+            case Immediate:
+                return Priority.HIGH;
+            case Prefetch:
+                return Priority.LOW;
+            default:
+                return Priority.MEDIUM;
+        }
+    }
+
     @Override
     public void execute(@NonNull Context context) {
+        cancel();
         String imageUrl = getRequestUrl();
-        if (imageUrl == null) {
+        ImageView imageView = getImageView();
+        if (imageUrl == null || imageView == null) {
             return;
         }
-        ImageView imageView = getImageView();
-        if (imageView != null) {
-            ImageRequest imageRequest = ImageRequest.fromUri(Uri.parse(imageUrl));
-            if (imageView instanceof DraweeView) {
-                DraweeView draweeView = (DraweeView) imageView;
-                DraweeController draweeController =
-                        Fresco.newDraweeControllerBuilder().setOldController(draweeView.getController()).setImageRequest(imageRequest).build();
-                draweeView.setController(draweeController);
-            } else {
-                int loadingImageId = getLoadingImageId();
-                if (loadingImageId > 0) {
-                    imageView.setImageResource(loadingImageId);
-                }
+        if (!(imageView instanceof DraweeView)) {
+            int loadingImageId = getLoadingImageId();
+            if (loadingImageId > 0) {
+                imageView.setImageResource(loadingImageId);
             }
-            mDataSource = Fresco.getImagePipeline().fetchDecodedImage(imageRequest, imageView.getContext());
-            mDataSource.subscribe(new BaseDataSubscriber<CloseableReference<CloseableImage>>() {
-                @Override
-                protected void onFailureImpl(DataSource<CloseableReference<CloseableImage>> dataSource) {
-                    checkAndSetImageRetry();
-                    IRequestCallback<Bitmap> requestCallback = getRequestCallback();
-                    if (requestCallback != null) {
-                        requestCallback.onFailure();
-                    }
-                    destroy();
-                }
+        }
+        if (imageView.getWidth() > 0 && imageView.getHeight() > 0 || getMaxWidth() > 0 && getMaxHeight() > 0) {
+            load(imageView, imageUrl);
+        } else {
+            // 尚未测量，等到绘制前再按测量后的尺寸加载
+            mPreDrawListener = new PreDrawListener(imageView, imageUrl);
+            imageView.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+        }
+    }
 
-                @Override
-                public void onNewResultImpl(DataSource<CloseableReference<CloseableImage>> dataSource) {
-                    if (!dataSource.isFinished()) {
-                        return;
-                    }
-                    CloseableReference<CloseableImage> closeableImageRef = dataSource.getResult();
-                    Bitmap bitmap = null;
-                    if (closeableImageRef != null && closeableImageRef.get() instanceof CloseableBitmap) {
-                        bitmap = ((CloseableBitmap) closeableImageRef.get()).getUnderlyingBitmap();
-                    }
-                    checkAndSetImage(bitmap);
-                    IRequestCallback<Bitmap> requestCallback = getRequestCallback();
-                    if (requestCallback != null) {
-                        requestCallback.onSuccess(bitmap);
-                    }
-                    CloseableReference.closeSafely(closeableImageRef);
-                    destroy();
-                }
-            }, UiThreadImmediateExecutorService.getInstance());
+    /**
+     获得解码尺寸，取ImageView测量后的尺寸，并限制在设置的最大尺寸以内
+
+     @param imageView 目标ImageView
+
+     @return 解码尺寸，无法确定宽高时为null，按原尺寸解码
+     */
+    @Nullable
+    private ResizeOptions getResizeOptions(@NonNull ImageView imageView) {
+        int width = imageView.getWidth();
+        int height = imageView.getHeight();
+        int maxWidth = getMaxWidth();
+        int maxHeight = getMaxHeight();
+
+        if (maxWidth > 0 && (width <= 0 || width > maxWidth)) {
+            width = maxWidth;
+        }
+        if (maxHeight > 0 && (height <= 0 || height > maxHeight)) {
+            height = maxHeight;
         }
+
+        return width > 0 && height > 0 ? new ResizeOptions(width, height) : null;
     }
 
     @Override
     public boolean isExecuting() {
-        return mDataSource != null && !mDataSource.isFinished();
+        return mDataSource != null && !mDataSource.isFinished() || mDraweeListener != null || mPreDrawListener != null;
+    }
+
+    private void load(@NonNull ImageView imageView, @NonNull String imageUrl) {
+        ImageRequestBuilder imageRequestBuilder = ImageRequestBuilder.newBuilderWithSource(Uri.parse(imageUrl))
+                .setRequestPriority(getFrescoPriority(getPriority()))
+                .setResizeOptions(getResizeOptions(imageView));
+        Bitmap.Config bitmapConfig = getBitmapConfig();
+        if (bitmapConfig != null) {
+            ImageDecodeOptionsBuilder imageDecodeOptionsBuilder = ImageDecodeOptions.newBuilder();
+            imageDecodeOptionsBuilder.setBitmapConfig(bitmapConfig);
+            imageRequestBuilder.setImageDecodeOptions(imageDecodeOptionsBuilder.build());
+        }
+        ImageRequest imageRequest = imageRequestBuilder.build();
+        if (imageView instanceof DraweeView) {
+            DraweeView draweeView = (DraweeView) imageView;
+            mDraweeListener = new DraweeListener(imageRequest);
+            DraweeController draweeController = Fresco.newDraweeControllerBuilder()
+                    .setOldController(draweeView.getController())
+                    .setImageRequest(imageRequest)
+                    .setControllerListener(mDraweeListener)
+                    .build();
+            draweeView.setController(draweeController);
+            return;
+        }
+        mDataSource = Fresco.getImagePipeline().fetchDecodedImage(imageRequest, imageView.getContext());
+        mDataSource.subscribe(new BaseDataSubscriber<CloseableReference<CloseableImage>>() {
+            @Override
+            protected void onFailureImpl(DataSource<CloseableReference<CloseableImage>> dataSource) {
+                checkAndSetImageRetry();
+                sendFailure(dataSource.getFailureCause());
+                destroy();
+            }
+
+            @Override
+            public void onNewResultImpl(DataSource<CloseableReference<CloseableImage>> dataSource) {
+                if (!dataSource.isFinished()) {
+                    return;
+                }
+                CloseableReference<CloseableImage> closeableImageRef = dataSource.getResult();
+                Bitmap bitmap = null;
+                if (closeableImageRef != null && closeableImageRef.get() instanceof CloseableBitmap) {
+                    bitmap = ((CloseableBitmap) closeableImageRef.get()).getUnderlyingBitmap();
+                }
+                checkAndSetImage(bitmap);
+                sendSuccess(closeableImageRef, bitmap);
+                CloseableReference.closeSafely(closeableImageRef);
+                destroy();
+            }
+        }, UiThreadImmediateExecutorService.getInstance());
+    }
+
+    private void sendFailure(@Nullable Throwable cause) {
+        IRequestCallback<IBitmapLease> leaseCallback = getLeaseCallback();
+        IRequestCallback<Bitmap> requestCallback = getRequestCallback();
+
+        if (leaseCallback != null) {
+            notifyFailure(leaseCallback, cause, 1);
+        } else if (requestCallback != null) {
+            notifyFailure(requestCallback, cause, 1);
+        }
+    }
+
+    /**
+     回调成功，设置了租约回调时为图片引用创建租约，调用者仍需关闭自己的引用
+     */
+    private void sendSuccess(@Nullable CloseableReference<CloseableImage> imageRef, @Nullable Bitmap bitmap) {
+        IRequestCallback<IBitmapLease> leaseCallback = getLeaseCallback();
+        IRequestCallback<Bitmap> requestCallback = getRequestCallback();
+
+        if (leaseCallback != null) {
+            FrescoBitmapLease lease = FrescoBitmapLease.create(imageRef);
+            if (lease == null) {
+                notifyFailure(leaseCallback, new IllegalStateException("No bitmap to lease"), 1);
+            } else {
+                trackLease(lease);
+                leaseCallback.onSuccess(lease);
+            }
+        } else if (requestCallback != null) {
+            requestCallback.onSuccess(bitmap);
+        }
+    }
+
+    /**
+     DraweeView加载的监听器，图片由DraweeController持有，只有需要租约时才从内存缓存中取得引用
+     */
+    private class DraweeListener extends BaseControllerListener<ImageInfo> {
+        private ImageRequest mImageRequest;
+
+        private DraweeListener(@NonNull ImageRequest imageRequest) {
+            mImageRequest = imageRequest;
+        }
+
+        @Override
+        public void onFailure(String id, Throwable throwable) {
+            if (mDraweeListener != this) {
+                return;
+            }
+            mDraweeListener = null;
+            sendFailure(throwable);
+            destroy();
+        }
+
+        @Override
+        public void onFinalImageSet(String id, ImageInfo imageInfo, Animatable animatable) {
+            if (mDraweeListener != this) {
+                return;
+            }
+            mDraweeListener = null;
+            Bitmap bitmap = null;
+            if (imageInfo instanceof CloseableBitmap) {
+                bitmap = ((CloseableBitmap) imageInfo).getUnderlyingBitmap();
+            }
+            CloseableReference<CloseableImage> imageRef = null;
+            if (getLeaseCallback() != null) {
+                ImagePipeline imagePipeline = Fresco.getImagePipeline();
+                imageRef = imagePipeline.getBitmapMemoryCache().get(imagePipeline.getCacheKeyFactory().getBitmapCacheKey(mImageRequest, null));
+            }
+            sendSuccess(imageRef, bitmap);
+            CloseableReference.closeSafely(imageRef);
+            destroy();
+        }
+    }
+
+    /**
+     在ImageView第一次绘制前开始加载，此时已经完成测量
+     */
+    private class PreDrawListener implements ViewTreeObserver.OnPreDrawListener {
+        private String mImageUrl;
+        private ImageView mImageView;
+
+        private PreDrawListener(@NonNull ImageView imageView, @NonNull String imageUrl) {
+            mImageView = imageView;
+            mImageUrl = imageUrl;
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            remove();
+            if (mPreDrawListener == this) {
+                mPreDrawListener = null;
+                load(mImageView, mImageUrl);
+            }
+
+            return true;
+        }
+
+        private void remove() {
+            ViewTreeObserver viewTreeObserver = mImageView.getViewTreeObserver();
+            if (viewTreeObserver.isAlive()) {
+                viewTreeObserver.removeOnPreDrawListener(this);
+            }
+        }
     }
 }
\ No newline at end of file
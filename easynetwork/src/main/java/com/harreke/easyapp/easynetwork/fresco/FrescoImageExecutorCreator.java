@@ -4,6 +4,7 @@ import android.app.Application;
 import android.support.annotation.NonNull;
 
 import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.core.ImagePipelineConfig;
 import com.harreke.easyapp.network.creator.IExecutorCreator;
 import com.harreke.easyapp.network.executor.ImageExecutor;
 
@@ -13,7 +14,8 @@ import com.harreke.easyapp.network.executor.ImageExecutor;
 
 public class FrescoImageExecutorCreator implements IExecutorCreator<ImageExecutor> {
     public FrescoImageExecutorCreator(@NonNull Application application) {
-        Fresco.initialize(application);
+        // 开启后缩小解码对PNG、WebP等格式同样有效，而不只是JPEG
+        Fresco.initialize(application, ImagePipelineConfig.newBuilder(application).setDownsampleEnabled(true).build());
     }
 
     @Override
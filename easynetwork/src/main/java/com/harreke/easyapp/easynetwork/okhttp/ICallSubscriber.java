@@ -0,0 +1,22 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+/**
+ 由 huoqisheng 于 2017/4/7 创建
+
+ 共享请求的订阅者，回调均发生在OkHttp工作线程
+ */
+interface ICallSubscriber<RESULT> {
+    void onFailure(@NonNull Throwable cause, int attempts);
+
+    /**
+     响应体的读取进度
+     */
+    void onProgress(long progress, long total);
+
+    /**
+     @param attempts 得到结果时的尝试次数，结果变换失败时用于报告失败
+     */
+    void onSuccess(RESULT result, int attempts);
+}
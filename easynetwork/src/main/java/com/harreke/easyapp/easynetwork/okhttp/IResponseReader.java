@@ -0,0 +1,16 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/7 创建
+
+ 在OkHttp工作线程中将响应读取为目标类型
+ */
+interface IResponseReader<RESULT> {
+    RESULT read(@NonNull Response response) throws IOException;
+}
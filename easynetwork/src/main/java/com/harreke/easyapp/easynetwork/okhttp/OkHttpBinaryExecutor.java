@@ -1,77 +1,70 @@
 package com.harreke.easyapp.easynetwork.okhttp;
 
 import android.content.Context;
-import android.os.Handler;
-import android.os.Message;
 import android.support.annotation.NonNull;
 
+import com.harreke.easyapp.network.CachePolicy;
+import com.harreke.easyapp.network.IPooledBuffer;
 import com.harreke.easyapp.network.IRequestCallback;
 import com.harreke.easyapp.network.RequestBuilder;
 import com.harreke.easyapp.network.executor.BinaryExecutor;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.concurrent.Executor;
 
-import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.FormBody;
 import okhttp3.Headers;
+import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
 
 /**
  由huoqisheng于2016/7/4创建
+
+ 设置了{@link #pooledCallback(IRequestCallback)}时响应体由{@link OkHttpBufferPool}读入可重用的分段，不分配完整长度的byte[]；
+ 尚未交给回调的缓冲区在取消时归还缓冲池。
+
+ 没有请求参数时仍以空表单POST请求，只有设置了{@link CachePolicy#Default}以外的缓存策略时才改用可以缓存的GET请求
  */
 public class OkHttpBinaryExecutor extends BinaryExecutor {
     private static final int FAILURE = -1;
+    private static final int PROGRESS = 1;
     private static final int SUCCESS = 0;
-    private Call mCall;
-    private Handler mHandler = new Handler(new Handler.Callback() {
-        @Override
-        public boolean handleMessage(Message message) {
-            IRequestCallback<byte[]> requestCallback = getRequestCallback();
-            if (requestCallback == null) {
-                destroy();
-                return false;
-            }
-            if (message.what == SUCCESS) {
-                requestCallback.onSuccess((byte[]) message.obj);
-            } else {
-                requestCallback.onFailure();
-            }
-            destroy();
-            return true;
-        }
-    });
-    private Callback mCallback = new Callback() {
+    private static final IResponseReader<byte[]> READER = new IResponseReader<byte[]>() {
         @Override
-        public void onFailure(Call call, IOException e) {
-            Message message = mHandler.obtainMessage();
-            message.what = FAILURE;
-            message.sendToTarget();
+        public byte[] read(@NonNull Response response) throws IOException {
+            return response.body().bytes();
         }
-
+    };
+    private static final IResponseReader<OkHttpPooledBuffer> POOLED_READER = new IResponseReader<OkHttpPooledBuffer>() {
         @Override
-        public void onResponse(Call call, Response response) throws IOException {
-            Message message = mHandler.obtainMessage();
-            message.what = SUCCESS;
-            message.obj = response.body().bytes();
-            message.sendToTarget();
-            response.body().close();
+        public OkHttpPooledBuffer read(@NonNull Response response) throws IOException {
+            return OkHttpBufferPool.getInstance().read(response.body().source());
         }
     };
+    private OkHttpCallCoalescer.Subscription<?> mSubscription;
+    /**
+     当前执行的分发目标，每次执行时重新创建
+     */
+    private Target mTarget = null;
 
     @Override
-    public void cancel() {
-        if (mCall != null) {
-            mCall.cancel();
-            mCall = null;
+    public synchronized void cancel() {
+        if (mSubscription != null) {
+            mSubscription.cancel();
+            mSubscription = null;
+        }
+        if (mTarget != null) {
+            OkHttpDelivery.getInstance().remove(mTarget);
+            mTarget.mProgressReporter.disable();
+            mTarget.releasePooledResult();
+            mTarget = null;
         }
     }
 
     @Override
-    public void execute(@NonNull Context context) {
+    public synchronized void execute(@NonNull Context context) {
         cancel();
         RequestBuilder requestBuilder = getRequestBuilder();
         if (requestBuilder == null) {
@@ -81,35 +74,151 @@ public class OkHttpBinaryExecutor extends BinaryExecutor {
         if (requestUrl == null) {
             return;
         }
-        Headers headers = getHeaders(requestBuilder);
-        RequestBody requestBody = getRequestBody(requestBuilder);
-        mCall = OkHttpClientHelper.getInstance().call(requestUrl, headers, requestBody);
-        mCall.enqueue(mCallback);
-    }
-
-    private Headers getHeaders(RequestBuilder requestBuilder) {
-        if (!requestBuilder.hasHeader()) {
-            return null;
+        Headers headers = OkHttpClientHelper.getHeaders(requestBuilder);
+        RequestBody requestBody = OkHttpClientHelper.getFormBody(requestBuilder);
+        if (requestBody == null && requestBuilder.getCachePolicy() == CachePolicy.Default) {
+            requestBody = new FormBody.Builder().build();
         }
-        Headers.Builder builder = new Headers.Builder();
-        Map<String, String> headerMap = requestBuilder.getHeader();
-        for (Map.Entry<String, String> header : headerMap.entrySet()) {
-            builder.add(header.getKey(), header.getValue());
+        Request request = OkHttpClientHelper.getInstance().newRequest(requestBuilder.getTag(), requestUrl, headers, requestBody, requestBuilder.getCachePolicy());
+        mTarget = new Target();
+        if (getPooledCallback() != null) {
+            // 缓冲区只能由一个回调释放，不与其他请求合并
+            mSubscription = OkHttpCallCoalescer.getInstance()
+                    .subscribe(null, request, getPriority(), getRetryPolicy(), POOLED_READER, mTarget.mPooledSubscriber);
+            return;
         }
-        return builder.build();
+        String key = OkHttpCallCoalescer.getKey("Binary", requestBuilder);
+        mSubscription = OkHttpCallCoalescer.getInstance().subscribe(key, request, getPriority(), getRetryPolicy(), READER, mTarget);
     }
 
-    private RequestBody getRequestBody(RequestBuilder requestBuilder) {
-        FormBody.Builder builder = new FormBody.Builder();
-        Map<String, String> bodyMap = requestBuilder.getBody();
-        for (Map.Entry<String, String> body : bodyMap.entrySet()) {
-            builder.add(body.getKey(), body.getValue());
-        }
-        return builder.build();
+    @Override
+    public boolean isExecuting() {
+        return mSubscription != null && mSubscription.isActive();
     }
 
     @Override
-    public boolean isExecuting() {
-        return mCall != null && !mCall.isCanceled();
+    protected void onPriorityChanged() {
+        if (mSubscription != null) {
+            mSubscription.setPriority(getPriority());
+        }
+    }
+
+    /**
+     一次执行的分发目标与订阅者，保存该次执行的结果；只有仍是当前目标时才分发，取消后旧目标发出的消息被忽略
+     */
+    private class Target implements OkHttpDelivery.ITarget, ICallSubscriber<byte[]> {
+        private volatile int mAttempts = 0;
+        private volatile Throwable mCause = null;
+        private volatile OkHttpPooledBuffer mPooledResult = null;
+        private ICallSubscriber<OkHttpPooledBuffer> mPooledSubscriber = new ICallSubscriber<OkHttpPooledBuffer>() {
+            @Override
+            public void onFailure(@NonNull Throwable cause, int attempts) {
+                Target.this.onFailure(cause, attempts);
+            }
+
+            @Override
+            public void onProgress(long progress, long total) {
+                Target.this.onProgress(progress, total);
+            }
+
+            @Override
+            public void onSuccess(OkHttpPooledBuffer result, int attempts) {
+                boolean current;
+
+                // 与取消互斥：取消之后才读取完成的缓冲区不会再被分发，也不会被cancel释放，需要在这里归还
+                synchronized (OkHttpBinaryExecutor.this) {
+                    current = mTarget == Target.this;
+                    if (current) {
+                        mPooledResult = result;
+                    }
+                }
+                if (current) {
+                    OkHttpDelivery.getInstance().post(Target.this, SUCCESS);
+                } else {
+                    result.release();
+                }
+            }
+        };
+        private OkHttpProgressReporter mProgressReporter = new OkHttpProgressReporter(this, PROGRESS);
+        private volatile Object mResult = null;
+
+        @Override
+        public Executor getExecutor() {
+            return OkHttpDelivery.getExecutor(getDeliveryPolicy(), getDeliveryExecutor());
+        }
+
+        @Override
+        public String getTag() {
+            RequestBuilder requestBuilder = getRequestBuilder();
+
+            return requestBuilder == null ? null : requestBuilder.getTag();
+        }
+
+        @Override
+        public void onDeliver(int what) {
+            // 不在主线程分发时，与取消互斥
+            synchronized (OkHttpBinaryExecutor.this) {
+                if (mTarget != this) {
+                    // 被取消的执行读取到的缓冲区不会再交给回调
+                    releasePooledResult();
+                    return;
+                }
+                if (what == PROGRESS) {
+                    mProgressReporter.deliver(getProgressCallback());
+                    return;
+                }
+                IRequestCallback<IPooledBuffer> pooledCallback = getPooledCallback();
+                IRequestCallback<?> requestCallback = getResultCallback();
+                if (pooledCallback != null) {
+                    if (what == SUCCESS) {
+                        IPooledBuffer pooledResult = mPooledResult;
+                        // 交给回调后由回调负责释放
+                        mPooledResult = null;
+                        pooledCallback.onSuccess(pooledResult);
+                    } else {
+                        notifyFailure(pooledCallback, mCause, mAttempts);
+                    }
+                } else if (requestCallback != null) {
+                    if (what == SUCCESS) {
+                        notifySuccess(requestCallback, mResult);
+                    } else {
+                        notifyFailure(requestCallback, mCause, mAttempts);
+                    }
+                }
+                destroy();
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Throwable cause, int attempts) {
+            mCause = cause;
+            mAttempts = attempts;
+            OkHttpDelivery.getInstance().post(this, FAILURE);
+        }
+
+        @Override
+        public void onProgress(long progress, long total) {
+            mProgressReporter.onProgress(progress, total);
+        }
+
+        @Override
+        public void onSuccess(byte[] result, int attempts) {
+            try {
+                mResult = transformResult(result);
+            } catch (Exception e) {
+                onFailure(e, attempts);
+                return;
+            }
+            OkHttpDelivery.getInstance().post(this, SUCCESS);
+        }
+
+        private void releasePooledResult() {
+            OkHttpPooledBuffer pooledResult = mPooledResult;
+
+            if (pooledResult != null) {
+                mPooledResult = null;
+                pooledResult.release();
+            }
+        }
     }
 }
\ No newline at end of file
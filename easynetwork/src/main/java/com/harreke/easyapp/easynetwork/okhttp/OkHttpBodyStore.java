@@ -0,0 +1,195 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.util.PackageUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ 由 huoqisheng 于 2017/4/28 创建
+
+ 持久化的响应体存储
+
+ 每个键对应{@link PackageUtil#CacheDir}下的一个文件，文件名为键的MD5；总大小超出上限时按最近使用时间淘汰。
+ 所有读写都在同一个后台线程中按提交顺序执行，因此先提交的读取总能在之后的写入前完成
+ */
+class OkHttpBodyStore {
+    private static final String DIR = "bodies";
+    /**
+     总大小上限
+     */
+    private static final long MAX_SIZE = 4L * 1024L * 1024L;
+    /**
+     单个响应体的大小上限，超出的响应体不保存
+     */
+    private static final long MAX_BODY_SIZE = MAX_SIZE / 8L;
+    private static final String SUFFIX_TEMP = ".tmp";
+    private volatile static OkHttpBodyStore mInstance = null;
+    private File mDir;
+    private ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "OkHttpBodyStore");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /**
+     当前总大小，第一次使用时统计，小于0表示尚未统计
+     */
+    private long mSize = -1L;
+
+    private OkHttpBodyStore() {
+        mDir = new File(PackageUtil.CacheDir, DIR);
+    }
+
+    static OkHttpBodyStore getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpBodyStore.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpBodyStore();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    /**
+     在后台线程中执行存储操作
+
+     @param runnable 操作
+     */
+    void execute(@NonNull Runnable runnable) {
+        mExecutor.execute(runnable);
+    }
+
+    /**
+     读取响应体，只能在{@link #execute(Runnable)}中调用
+
+     @param key 键
+
+     @return 响应体，不存在时为null
+     */
+    @Nullable
+    String get(@NonNull String key) {
+        File file = getFile(key);
+        BufferedSource source = null;
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            source = Okio.buffer(Okio.source(file));
+            String body = source.readUtf8();
+            // 更新最近使用时间
+            file.setLastModified(System.currentTimeMillis());
+
+            return body;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private File getFile(@NonNull String key) {
+        return new File(mDir, ByteString.encodeUtf8(key).md5().hex());
+    }
+
+    /**
+     保存响应体，只能在{@link #execute(Runnable)}中调用
+
+     @param key 键
+     @param body 响应体
+     */
+    void put(@NonNull String key, @NonNull String body) {
+        File file = getFile(key);
+        File tempFile = new File(file.getAbsolutePath() + SUFFIX_TEMP);
+        ByteString bytes = ByteString.encodeUtf8(body);
+        BufferedSink sink = null;
+
+        if (bytes.size() > MAX_BODY_SIZE || !mDir.isDirectory() && !mDir.mkdirs()) {
+            return;
+        }
+        if (mSize < 0L) {
+            mSize = 0L;
+            for (File child : listFiles()) {
+                mSize += child.length();
+            }
+        }
+        try {
+            sink = Okio.buffer(Okio.sink(tempFile));
+            sink.write(bytes);
+            sink.close();
+            sink = null;
+            long oldLength = file.isFile() ? file.length() : 0L;
+            // 重命名是原子操作，读取时不会看到写了一半的文件
+            if (tempFile.renameTo(file)) {
+                mSize += bytes.size() - oldLength;
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+        } finally {
+            if (sink != null) {
+                try {
+                    sink.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        trim();
+    }
+
+    private File[] listFiles() {
+        File[] files = mDir.listFiles();
+
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     淘汰最久未使用的响应体，直到总大小不超过上限
+     */
+    private void trim() {
+        if (mSize <= MAX_SIZE) {
+            return;
+        }
+        File[] files = listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                long lastModified1 = file1.lastModified();
+                long lastModified2 = file2.lastModified();
+
+                return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (mSize <= MAX_SIZE) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+}
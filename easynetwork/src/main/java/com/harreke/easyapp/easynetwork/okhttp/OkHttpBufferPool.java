@@ -0,0 +1,113 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import okio.BufferedSource;
+
+/**
+ 由 huoqisheng 于 2017/5/1 创建
+
+ 固定大小分段的缓冲池
+
+ 响应体按{@link #SEGMENT_SIZE}字节一段读入从池中借出的分段，释放后分段回到池中供下一个响应使用，持续读取二进制响应时不会反复分配大数组；
+ 池中最多保留{@link #MAX_POOLED}个空闲分段，多出的分段交给垃圾回收
+ */
+class OkHttpBufferPool {
+    /**
+     池中保留的最大空闲分段数，即最多保留4MB
+     */
+    private static final int MAX_POOLED = 256;
+    static final int SEGMENT_SIZE = 16 * 1024;
+    private volatile static OkHttpBufferPool mInstance = null;
+    private final Deque<byte[]> mSegmentDeque = new ArrayDeque<>();
+
+    private OkHttpBufferPool() {
+    }
+
+    static OkHttpBufferPool getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpBufferPool.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpBufferPool();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    private byte[] obtain() {
+        byte[] segment;
+
+        synchronized (mSegmentDeque) {
+            segment = mSegmentDeque.pollFirst();
+        }
+
+        return segment != null ? segment : new byte[SEGMENT_SIZE];
+    }
+
+    /**
+     将数据源读取到结束，读取失败时已借出的分段会被归还
+
+     @param source 数据源
+
+     @return 缓冲区
+     */
+    @NonNull
+    OkHttpPooledBuffer read(@NonNull BufferedSource source) throws IOException {
+        List<byte[]> segmentList = new ArrayList<>();
+        long length = 0L;
+        boolean exhausted = false;
+
+        try {
+            while (!exhausted) {
+                byte[] segment = obtain();
+                int offset = 0;
+                while (offset < SEGMENT_SIZE) {
+                    int read = source.read(segment, offset, SEGMENT_SIZE - offset);
+                    if (read == -1) {
+                        exhausted = true;
+                        break;
+                    }
+                    offset += read;
+                }
+                if (offset == 0) {
+                    recycle(segment);
+                } else {
+                    segmentList.add(segment);
+                    length += offset;
+                }
+            }
+        } catch (IOException e) {
+            recycle(segmentList);
+            throw e;
+        }
+
+        return new OkHttpPooledBuffer(segmentList, length);
+    }
+
+    private void recycle(@NonNull byte[] segment) {
+        synchronized (mSegmentDeque) {
+            if (mSegmentDeque.size() < MAX_POOLED) {
+                mSegmentDeque.offerFirst(segment);
+            }
+        }
+    }
+
+    /**
+     归还分段
+
+     @param segmentList 分段
+     */
+    void recycle(@NonNull List<byte[]> segmentList) {
+        for (byte[] segment : segmentList) {
+            recycle(segment);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.IPooledBuffer;
+import com.harreke.easyapp.network.IProgressCallback;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RequestPriority;
+import com.harreke.easyapp.network.RetryPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/7 创建
+
+ 请求合并器
+
+ 同一时刻发起的相同请求（方法、完整链接、Header、Body与缓存策略均相同）只会产生一次网络调用，结果分发给所有订阅者；
+ 某个订阅者取消时只移除该订阅者，最后一个订阅者取消时才会取消网络调用；响应体的读取进度同样分发给所有订阅者。
+ 网络调用由{@link OkHttpScheduler}调度，优先级取所有订阅者中最高的一个；重试策略使用发起网络调用的订阅者的策略。
+ {@link OkHttpPrefetchStore}中有预取的结果时直接使用，不发起网络调用
+ */
+class OkHttpCallCoalescer {
+    private volatile static OkHttpCallCoalescer mInstance = null;
+    private final Map<String, SharedCall<?>> mSharedCallMap = new HashMap<>();
+
+    private OkHttpCallCoalescer() {
+    }
+
+    static OkHttpCallCoalescer getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpCallCoalescer.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpCallCoalescer();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    /**
+     生成请求的合并键
+
+     RequestBuilder内部使用TreeMap保存参数，因此相同参数生成的键总是一致的
+
+     @param type 结果类型，不同结果类型的请求不会被合并
+     @param requestBuilder 请求构造器
+
+     @return 合并键
+     */
+    static String getKey(@NonNull String type, @NonNull RequestBuilder requestBuilder) {
+        return type + " " + (requestBuilder.hasBody() ? "POST " : "GET ") + requestBuilder.getUrl() + "\n" + requestBuilder.getHeaderString() + "\n" +
+                requestBuilder.getBodyString() + "\n" + requestBuilder.getCachePolicy().name();
+    }
+
+    /**
+     订阅请求
+
+     @param key 合并键，为null时不参与合并
+     @param request 请求，只有在没有可合并的请求时才会被执行
+     @param priority 订阅者的优先级
+     @param retryPolicy 重试策略，只有在没有可合并的请求时才会被使用
+     @param reader 响应读取器
+     @param subscriber 订阅者
+
+     @return 订阅
+     */
+    @SuppressWarnings("unchecked")
+    <RESULT> Subscription<RESULT> subscribe(@Nullable String key, @NonNull Request request, @NonNull RequestPriority priority,
+            @Nullable RetryPolicy retryPolicy, @NonNull IResponseReader<RESULT> reader, @NonNull ICallSubscriber<RESULT> subscriber) {
+        SharedCall<RESULT> sharedCall = null;
+        Subscription<RESULT> subscription;
+        boolean created = false;
+
+        synchronized (mSharedCallMap) {
+            if (key != null) {
+                sharedCall = (SharedCall<RESULT>) mSharedCallMap.get(key);
+            }
+            if (sharedCall == null) {
+                sharedCall = new SharedCall<>(key, request, priority, retryPolicy, reader);
+                if (key != null) {
+                    mSharedCallMap.put(key, sharedCall);
+                }
+                created = true;
+            }
+            subscription = sharedCall.add(subscriber, priority);
+        }
+        if (created) {
+            sharedCall.enqueue();
+        } else {
+            sharedCall.updatePriority();
+        }
+
+        return subscription;
+    }
+
+    private class SharedCall<RESULT> implements OkHttpRetryCall.IListener, IProgressCallback {
+        private boolean mFinished = false;
+        private String mKey;
+        private IResponseReader<RESULT> mReader;
+        private Request mRequest;
+        private OkHttpRetryCall mRetryCall;
+        private List<Subscription<RESULT>> mSubscriptionList = new ArrayList<>(1);
+
+        private SharedCall(@Nullable String key, @NonNull Request request, @NonNull RequestPriority priority, @Nullable RetryPolicy retryPolicy,
+                @NonNull IResponseReader<RESULT> reader) {
+            mKey = key;
+            mReader = reader;
+            mRequest = request;
+            mRetryCall = new OkHttpRetryCall(request, priority, retryPolicy, this);
+        }
+
+        private Subscription<RESULT> add(@NonNull ICallSubscriber<RESULT> subscriber, @NonNull RequestPriority priority) {
+            Subscription<RESULT> subscription = new Subscription<>(this, subscriber, priority);
+
+            mSubscriptionList.add(subscription);
+
+            return subscription;
+        }
+
+        private void enqueue() {
+            final Response prefetched = OkHttpPrefetchStore.getInstance().take(mRequest);
+
+            if (prefetched == null) {
+                mRetryCall.start();
+                return;
+            }
+            // 使用预取的结果，不再请求网络，读取仍在工作线程中进行
+            OkHttpClientHelper.getInstance().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        onResponse(prefetched, 1);
+                    } catch (IOException e) {
+                        onFailure(e, 1);
+                    }
+                }
+            });
+        }
+
+        private List<Subscription<RESULT>> finish() {
+            List<Subscription<RESULT>> subscriptionList;
+
+            synchronized (mSharedCallMap) {
+                if (mKey != null && mSharedCallMap.get(mKey) == this) {
+                    mSharedCallMap.remove(mKey);
+                }
+                mFinished = true;
+                subscriptionList = new ArrayList<>(mSubscriptionList);
+                mSubscriptionList.clear();
+                for (Subscription<RESULT> subscription : subscriptionList) {
+                    subscription.mActive = false;
+                }
+            }
+
+            return subscriptionList;
+        }
+
+        private RequestPriority getPriority() {
+            RequestPriority priority = RequestPriority.Prefetch;
+
+            synchronized (mSharedCallMap) {
+                for (Subscription<RESULT> subscription : mSubscriptionList) {
+                    if (subscription.mPriority.compareTo(priority) < 0) {
+                        priority = subscription.mPriority;
+                    }
+                }
+            }
+
+            return priority;
+        }
+
+        @Override
+        public void onFailure(@NonNull IOException e, int attempts) {
+            for (Subscription<RESULT> subscription : finish()) {
+                subscription.mSubscriber.onFailure(e, attempts);
+            }
+        }
+
+        @Override
+        public void onProgress(long progress, long total) {
+            List<Subscription<RESULT>> subscriptionList;
+
+            // 在锁外回调：订阅者可能直接在当前线程中分发并获取执行器的锁，而执行器取消订阅时持有自身的锁再获取mSharedCallMap
+            synchronized (mSharedCallMap) {
+                subscriptionList = new ArrayList<>(mSubscriptionList);
+            }
+            for (Subscription<RESULT> subscription : subscriptionList) {
+                subscription.mSubscriber.onProgress(progress, total);
+            }
+        }
+
+        @Override
+        public void onResponse(@NonNull Response response, int attempts) throws IOException {
+            RESULT result = null;
+            Throwable cause = null;
+
+            try {
+                if (OkHttpClientHelper.isUnsatisfiable(response)) {
+                    cause = new IOException("Unsatisfiable request (only-if-cached)");
+                } else {
+                    result = mReader.read(response.newBuilder().body(new OkHttpProgressResponseBody(response.body(), this)).build());
+                }
+            } catch (IOException | RuntimeException e) {
+                // 读取器解析失败（如JSON格式错误）时同样回调失败，不让异常抛到OkHttp的工作线程
+                cause = e;
+            } finally {
+                response.close();
+            }
+            List<Subscription<RESULT>> subscriptionList = finish();
+            // 读取期间所有订阅者都已取消时，没有人会释放读取到的缓冲区
+            if (subscriptionList.isEmpty() && result instanceof IPooledBuffer) {
+                ((IPooledBuffer) result).release();
+            }
+            for (Subscription<RESULT> subscription : subscriptionList) {
+                if (cause == null) {
+                    subscription.mSubscriber.onSuccess(result, attempts);
+                } else {
+                    subscription.mSubscriber.onFailure(cause, attempts);
+                }
+            }
+        }
+
+        private void remove(@NonNull Subscription<RESULT> subscription) {
+            boolean cancel = false;
+
+            synchronized (mSharedCallMap) {
+                subscription.mActive = false;
+                if (mSubscriptionList.remove(subscription) && mSubscriptionList.isEmpty() && !mFinished) {
+                    mFinished = true;
+                    if (mKey != null && mSharedCallMap.get(mKey) == this) {
+                        mSharedCallMap.remove(mKey);
+                    }
+                    cancel = true;
+                }
+            }
+            if (cancel) {
+                mRetryCall.cancel();
+            }
+        }
+
+        private void updatePriority() {
+            mRetryCall.setPriority(getPriority());
+        }
+    }
+
+    /**
+     共享请求中的一个订阅
+     */
+    class Subscription<RESULT> {
+        private volatile boolean mActive = true;
+        private RequestPriority mPriority;
+        private SharedCall<RESULT> mSharedCall;
+        private ICallSubscriber<RESULT> mSubscriber;
+
+        private Subscription(@NonNull SharedCall<RESULT> sharedCall, @NonNull ICallSubscriber<RESULT> subscriber, @NonNull RequestPriority priority) {
+            mSharedCall = sharedCall;
+            mSubscriber = subscriber;
+            mPriority = priority;
+        }
+
+        /**
+         取消订阅，只有最后一个订阅者取消时才会取消网络调用
+         */
+        void cancel() {
+            if (mActive) {
+                mSharedCall.remove(this);
+            }
+        }
+
+        boolean isActive() {
+            return mActive;
+        }
+
+        /**
+         调整订阅者的优先级，共享请求的优先级随之更新
+
+         @param priority 优先级
+         */
+        void setPriority(@NonNull RequestPriority priority) {
+            synchronized (mSharedCallMap) {
+                mPriority = priority;
+            }
+            if (mActive) {
+                mSharedCall.updatePriority();
+            }
+        }
+    }
+}
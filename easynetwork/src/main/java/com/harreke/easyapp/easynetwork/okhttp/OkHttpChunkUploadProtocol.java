@@ -0,0 +1,118 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.HttpStatusException;
+import com.harreke.easyapp.network.IChunkUploadProtocol;
+import com.harreke.easyapp.network.RequestBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/27 创建
+
+ 基于OkHttp的分块上传协议
+
+ 子类只需要提供每一步的请求并解析会话标识，请求通过共享的OkHttpClient同步执行；
+ 分块内容以application/octet-stream作为请求体发送，其余请求使用请求构造器中的Body；
+ 服务器返回非2xx状态码时抛出{@link HttpStatusException}，由{@link com.harreke.easyapp.network.ChunkUploader}按状态码决定是否重试
+ */
+public abstract class OkHttpChunkUploadProtocol implements IChunkUploadProtocol {
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    @Override
+    public String commit(@NonNull String session, @NonNull List<String> checksumList) throws IOException {
+        return execute(getCommitRequest(session, checksumList), null);
+    }
+
+    private String execute(@NonNull RequestBuilder requestBuilder, RequestBody requestBody) throws IOException {
+        Headers headers = OkHttpClientHelper.getHeaders(requestBuilder);
+        if (requestBody == null) {
+            requestBody = OkHttpClientHelper.getFormBody(requestBuilder);
+        }
+        Request request = OkHttpClientHelper.getInstance()
+                .newRequest(requestBuilder.getTag(), requestBuilder.getUrl(), headers, requestBody, requestBuilder.getCachePolicy());
+        Response response = OkHttpClientHelper.getInstance().newCall(request).execute();
+
+        try {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code(), "Unexpected code " + response.code() + " for " + requestBuilder.getUrl());
+            }
+
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     获得上传分块的请求，分块内容会作为请求体发送，请求构造器中的Body会被忽略
+
+     @param session 会话标识
+     @param index 分块的序号
+     @param offset 分块在文件中的位置
+     @param length 分块长度
+     @param checksum 分块的校验值
+
+     @return 请求构造器
+     */
+    @NonNull
+    protected abstract RequestBuilder getChunkRequest(@NonNull String session, int index, long offset, int length, @NonNull String checksum);
+
+    /**
+     获得完成上传的请求
+
+     @param session 会话标识
+     @param checksumList 按分块顺序排列的校验值
+
+     @return 请求构造器
+     */
+    @NonNull
+    protected abstract RequestBuilder getCommitRequest(@NonNull String session, @NonNull List<String> checksumList);
+
+    /**
+     获得开始上传的请求
+
+     @param fileName 文件名
+     @param length 文件长度
+     @param chunkSize 分块大小
+
+     @return 请求构造器
+     */
+    @NonNull
+    protected abstract RequestBuilder getOpenRequest(@NonNull String fileName, long length, int chunkSize);
+
+    @NonNull
+    @Override
+    public String open(@NonNull String fileName, long length, int chunkSize) throws IOException {
+        String session = parseSession(execute(getOpenRequest(fileName, length, chunkSize), null));
+
+        if (session == null || session.length() == 0) {
+            throw new IOException("No upload session");
+        }
+
+        return session;
+    }
+
+    /**
+     从开始上传请求的响应中解析会话标识
+
+     @param response 响应内容
+
+     @return 会话标识，无法解析时为null
+     */
+    protected abstract String parseSession(@NonNull String response);
+
+    @Override
+    public void upload(@NonNull String session, int index, long offset, @NonNull byte[] data, int length, @NonNull String checksum)
+            throws IOException {
+        execute(getChunkRequest(session, index, offset, length, checksum), RequestBody.create(OCTET_STREAM, data, 0, length));
+    }
+}
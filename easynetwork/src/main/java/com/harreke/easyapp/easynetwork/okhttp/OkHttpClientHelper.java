@@ -3,28 +3,41 @@ package com.harreke.easyapp.easynetwork.okhttp;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import com.harreke.easyapp.util.JsonUtil;
-import com.harreke.easyapp.util.ListUtil;
-import com.harreke.easyapp.util.PreferenceUtil;
+import com.harreke.easyapp.network.CachePolicy;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.util.PackageUtil;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.Call;
-import okhttp3.Cookie;
-import okhttp3.CookieJar;
+import okhttp3.FormBody;
 import okhttp3.Headers;
-import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  由huoqisheng于2016/7/5创建
  */
 public class OkHttpClientHelper {
+    /**
+     Http缓存目录，位于{@link PackageUtil#CacheDir}下
+     */
+    private static final String CACHE_DIR = "http";
+    /**
+     Http缓存大小上限，超出后按LRU淘汰
+     */
+    private static final long CACHE_SIZE = 20L * 1024L * 1024L;
+    /**
+     {@link CachePolicy#CacheFirst}：允许使用任意过期程度的缓存
+     */
+    private static final CacheControl CACHE_FIRST = new CacheControl.Builder().maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS).build();
     private volatile static OkHttpClientHelper mInstance = null;
     private OkHttpClient mOkHttpClient;
 
@@ -49,37 +62,12 @@ public class OkHttpClientHelper {
         //        } catch (NoSuchAlgorithmException | KeyManagementException ignored) {
         //            Logger.e("cannot init ssl");
         //        }
-        OkHttpClient.Builder builder = new OkHttpClient.Builder().cookieJar(new CookieJar() {
-            @Override
-            public List<Cookie> loadForRequest(HttpUrl url) {
-                List<String> cookieStrList = JsonUtil.toList(PreferenceUtil.readString("cookie", url.host(), null), String.class);
-
-                if (cookieStrList == null) {
-                    return Collections.emptyList();
-                } else {
-                    List<Cookie> cookieList = new ArrayList<Cookie>(cookieStrList.size());
-                    for (String cookieStr : cookieStrList) {
-                        Cookie cookie = Cookie.parse(url, cookieStr);
-                        if (cookie != null) {
-                            cookieList.add(cookie);
-                        }
-                    }
-
-                    return cookieList;
-                }
-            }
-
-            @Override
-            public void saveFromResponse(HttpUrl url, List<Cookie> cookieList) {
-                if (!ListUtil.isEmpty(cookieList)) {
-                    List<String> cookieStrList = new ArrayList<String>(cookieList.size());
-                    for (Cookie cookie : cookieList) {
-                        cookieStrList.add(cookie.toString());
-                    }
-                    PreferenceUtil.writeString("cookie", url.host(), JsonUtil.toString(cookieStrList));
-                }
-            }
-        }).connectTimeout(15, TimeUnit.SECONDS).readTimeout(15, TimeUnit.SECONDS).writeTimeout(15, TimeUnit.SECONDS);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder().cookieJar(new OkHttpCookieStore())
+                .eventListenerFactory(OkHttpNetworkMetrics.getInstance())
+                .connectTimeout(15, TimeUnit.SECONDS).readTimeout(15, TimeUnit.SECONDS).writeTimeout(15, TimeUnit.SECONDS);
+        if (PackageUtil.CacheDir != null) {
+            builder.cache(new Cache(new File(PackageUtil.CacheDir, CACHE_DIR), CACHE_SIZE));
+        }
         //        if (sc != null) {
         //            builder.socketFactory(sc.getSocketFactory());
         //            builder.hostnameVerifier(new HostnameVerifier() {
@@ -92,6 +80,52 @@ public class OkHttpClientHelper {
         mOkHttpClient = builder.build();
     }
 
+    private static CacheControl getCacheControl(@NonNull CachePolicy cachePolicy) {
+        switch (cachePolicy) {
+            case NetworkOnly:
+                return CacheControl.FORCE_NETWORK;
+            case CacheFirst:
+                return CACHE_FIRST;
+            case ForceCache:
+                return CacheControl.FORCE_CACHE;
+            default:
+                return null;
+        }
+    }
+
+    static RequestBody getFormBody(@NonNull RequestBuilder requestBuilder) {
+        if (!requestBuilder.hasBody()) {
+            return null;
+        }
+        FormBody.Builder builder = new FormBody.Builder();
+        Map<String, String> bodyMap = requestBuilder.getBody();
+        for (Map.Entry<String, String> body : bodyMap.entrySet()) {
+            builder.add(body.getKey(), body.getValue());
+        }
+        return gzip(builder.build(), requestBuilder.getGzipThreshold());
+    }
+
+    static Headers getHeaders(@NonNull RequestBuilder requestBuilder) {
+        if (!requestBuilder.hasHeader()) {
+            return null;
+        }
+        Headers.Builder builder = new Headers.Builder();
+        Map<String, String> headerMap = requestBuilder.getHeader();
+        for (Map.Entry<String, String> header : headerMap.entrySet()) {
+            builder.add(header.getKey(), header.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     在OkHttp的工作线程池中执行任务
+
+     @param runnable 任务
+     */
+    void execute(@NonNull Runnable runnable) {
+        mOkHttpClient.dispatcher().executorService().execute(runnable);
+    }
+
     static OkHttpClientHelper getInstance() {
         if (mInstance == null) {
             synchronized (OkHttpClientHelper.class) {
@@ -104,16 +138,69 @@ public class OkHttpClientHelper {
         return mInstance;
     }
 
-    Call call(@NonNull String requestUrl, @Nullable Headers headers, @Nullable RequestBody requestBody) {
-        Request.Builder builder = new Request.Builder().url(requestUrl);
+    /**
+     请求体不小于阈值时以gzip压缩
+
+     @param requestBody 请求体
+     @param threshold 阈值（字节），小于0时不压缩
+
+     @return 压缩后的请求体，不需要压缩时为原请求体
+     */
+    private static RequestBody gzip(@NonNull RequestBody requestBody, long threshold) {
+        long contentLength;
+
+        if (threshold < 0L) {
+            return requestBody;
+        }
+        try {
+            contentLength = requestBody.contentLength();
+        } catch (IOException e) {
+            return requestBody;
+        }
+
+        return contentLength >= threshold ? new OkHttpGzipRequestBody(requestBody) : requestBody;
+    }
+
+    /**
+     判断响应是否为只读缓存时缓存未命中（{@link CachePolicy#ForceCache}下的504）
+
+     @param response 响应
+
+     @return 是否未命中
+     */
+    static boolean isUnsatisfiable(@NonNull Response response) {
+        return response.networkResponse() == null && response.cacheResponse() == null;
+    }
+
+    Call newCall(@NonNull Request request) {
+        return mOkHttpClient.newCall(request);
+    }
+
+    /**
+     创建请求
+
+     @param tag 请求的标签，用于按标签统计耗时
+
+     @return 请求
+     */
+    Request newRequest(@Nullable String tag, @NonNull String requestUrl, @Nullable Headers headers, @Nullable RequestBody requestBody,
+            @NonNull CachePolicy cachePolicy) {
+        Request.Builder builder = new Request.Builder().url(requestUrl).tag(tag);
+        CacheControl cacheControl = getCacheControl(cachePolicy);
 
         if (headers != null) {
             builder.headers(headers);
         }
         if (requestBody != null) {
             builder.post(requestBody);
+            if (requestBody instanceof OkHttpGzipRequestBody) {
+                builder.header("Content-Encoding", "gzip");
+            }
+        }
+        if (cacheControl != null) {
+            builder.cacheControl(cacheControl);
         }
 
-        return mOkHttpClient.newCall(builder.build());
+        return builder.build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.util.JsonUtil;
+import com.harreke.easyapp.util.PreferenceUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+/**
+ 由 huoqisheng 于 2017/4/11 创建
+
+ 按主机分组的内存Cookie存储
+
+ 每个主机的Cookie只在第一次使用时从SharedPreferences读取一次，之后的读写都在内存中完成；
+ 修改过的主机会在{@link #PERSIST_DELAY}毫秒后在后台线程中批量写回，存储格式与旧版本一致
+ */
+class OkHttpCookieStore implements CookieJar {
+    private static final String PREFERENCE_NAME = "cookie";
+    private static final long PERSIST_DELAY = 1000L;
+    private final Map<String, Map<String, Cookie>> mCookieMap = new HashMap<>();
+    private final Set<String> mDirtyHostSet = new HashSet<>();
+    private final Runnable mPersistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            persist();
+        }
+    };
+    private boolean mPersistScheduled = false;
+    private final ScheduledExecutorService mPersistService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "OkHttpCookieStore");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static String getCookieKey(@NonNull Cookie cookie) {
+        return cookie.name() + ";" + cookie.domain() + ";" + cookie.path();
+    }
+
+    private Map<String, Cookie> getHostCookieMap(@NonNull HttpUrl url) {
+        String host = url.host();
+        Map<String, Cookie> hostCookieMap = mCookieMap.get(host);
+
+        if (hostCookieMap == null) {
+            hostCookieMap = new LinkedHashMap<>();
+            List<String> cookieStrList = JsonUtil.toList(PreferenceUtil.readString(PREFERENCE_NAME, host, null), String.class);
+            if (cookieStrList != null) {
+                for (String cookieStr : cookieStrList) {
+                    Cookie cookie = Cookie.parse(url, cookieStr);
+                    if (cookie != null) {
+                        hostCookieMap.put(getCookieKey(cookie), cookie);
+                    }
+                }
+            }
+            mCookieMap.put(host, hostCookieMap);
+        }
+
+        return hostCookieMap;
+    }
+
+    @Override
+    public synchronized List<Cookie> loadForRequest(HttpUrl url) {
+        Map<String, Cookie> hostCookieMap = getHostCookieMap(url);
+        if (hostCookieMap.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Cookie> cookieList = new ArrayList<>(hostCookieMap.size());
+        long now = System.currentTimeMillis();
+        boolean expired = false;
+        Iterator<Cookie> iterator = hostCookieMap.values().iterator();
+        while (iterator.hasNext()) {
+            Cookie cookie = iterator.next();
+            if (cookie.expiresAt() < now) {
+                iterator.remove();
+                expired = true;
+            } else if (cookie.matches(url)) {
+                cookieList.add(cookie);
+            }
+        }
+        if (expired) {
+            schedulePersist(url.host());
+        }
+
+        return cookieList;
+    }
+
+    private void persist() {
+        Map<String, List<String>> persistMap = new HashMap<>();
+
+        synchronized (this) {
+            mPersistScheduled = false;
+            for (String host : mDirtyHostSet) {
+                Map<String, Cookie> hostCookieMap = mCookieMap.get(host);
+                List<String> cookieStrList = new ArrayList<>(hostCookieMap.size());
+                for (Cookie cookie : hostCookieMap.values()) {
+                    cookieStrList.add(cookie.toString());
+                }
+                persistMap.put(host, cookieStrList);
+            }
+            mDirtyHostSet.clear();
+        }
+        for (Map.Entry<String, List<String>> entry : persistMap.entrySet()) {
+            PreferenceUtil.writeString(PREFERENCE_NAME, entry.getKey(), JsonUtil.toString(entry.getValue()));
+        }
+    }
+
+    @Override
+    public synchronized void saveFromResponse(HttpUrl url, List<Cookie> cookieList) {
+        if (cookieList == null || cookieList.isEmpty()) {
+            return;
+        }
+        Map<String, Cookie> hostCookieMap = getHostCookieMap(url);
+        long now = System.currentTimeMillis();
+        for (Cookie cookie : cookieList) {
+            if (cookie.expiresAt() < now) {
+                hostCookieMap.remove(getCookieKey(cookie));
+            } else {
+                hostCookieMap.put(getCookieKey(cookie), cookie);
+            }
+        }
+        schedulePersist(url.host());
+    }
+
+    private void schedulePersist(@NonNull String host) {
+        mDirtyHostSet.add(host);
+        if (!mPersistScheduled) {
+            mPersistScheduled = true;
+            mPersistService.schedule(mPersistRunnable, PERSIST_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+}
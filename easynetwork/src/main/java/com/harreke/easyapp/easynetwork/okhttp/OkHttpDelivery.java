@@ -0,0 +1,140 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.DeliveryPolicy;
+import com.harreke.easyapp.network.INetworkMetrics;
+
+import java.util.concurrent.Executor;
+
+/**
+ 由 huoqisheng 于 2017/4/19 创建
+
+ 所有执行器共用的分发器
+
+ 消息的obj为接收消息的目标，结果由目标自己保存，分发过程只使用Message自带的对象池；
+ 目标指定了Executor时改为交给该Executor执行，{@link DeliveryPolicy#Worker}直接在发送消息的线程中执行。
+ 执行器每次执行都使用新的目标，取消时移除旧目标在队列中的消息；之后旧目标仍可能发送消息（如被取消的请求回调失败），
+ 或者消息已经交给了Executor，因此目标在{@link ITarget#onDeliver(int)}中必须先判断自己是否仍是执行器当前的目标。
+ 指定了Executor时消息可能在多个线程中同时分发，目标需要持有执行器的锁完成判断与回调，使同一执行器的分发依次进行并与取消互斥。
+ 开启耗时统计时，消息从发送到开始处理的等待时间计入{@link INetworkMetrics.Phase#Delivery}
+ */
+class OkHttpDelivery {
+    /**
+     在调用线程中直接执行
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            runnable.run();
+        }
+    };
+    private volatile static OkHttpDelivery mInstance = null;
+    private Handler mHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message message) {
+            deliver((ITarget) message.obj, message.what, message.getWhen());
+            return true;
+        }
+    });
+
+    private OkHttpDelivery() {
+    }
+
+    /**
+     获得分发策略对应的Executor
+
+     @param deliveryPolicy 分发策略
+     @param executor {@link DeliveryPolicy#Custom}使用的Executor
+
+     @return Executor，在主线程中分发时为null
+     */
+    @Nullable
+    static Executor getExecutor(@NonNull DeliveryPolicy deliveryPolicy, @Nullable Executor executor) {
+        switch (deliveryPolicy) {
+            case Worker:
+                return DIRECT;
+            case Custom:
+                return executor;
+            default:
+                return null;
+        }
+    }
+
+    static OkHttpDelivery getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpDelivery.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpDelivery();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    private void deliver(@NonNull ITarget target, int what, long when) {
+        OkHttpNetworkMetrics metrics = OkHttpNetworkMetrics.getInstance();
+
+        if (metrics.isEnabled()) {
+            metrics.record(target.getTag(), INetworkMetrics.Phase.Delivery, SystemClock.uptimeMillis() - when);
+        }
+        target.onDeliver(what);
+    }
+
+    void post(@NonNull final ITarget target, final int what) {
+        Executor executor = target.getExecutor();
+
+        if (executor == null) {
+            Message.obtain(mHandler, what, target).sendToTarget();
+            return;
+        }
+        final long when = SystemClock.uptimeMillis();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(target, what, when);
+            }
+        });
+    }
+
+    /**
+     移除目标所有尚未分发的消息，已经交给Executor的消息无法移除
+     */
+    void remove(@NonNull ITarget target) {
+        mHandler.removeCallbacksAndMessages(target);
+    }
+
+    void remove(@NonNull ITarget target, int what) {
+        mHandler.removeMessages(what, target);
+    }
+
+    interface ITarget {
+        /**
+         获得分发消息的Executor
+
+         @return Executor，为null时在主线程中分发
+         */
+        @Nullable
+        Executor getExecutor();
+
+        /**
+         获得目标的请求标签，用于统计分发耗时
+
+         @return 请求标签
+         */
+        String getTag();
+
+        /**
+         处理消息，默认在主线程中调用；目标已不是执行器当前的目标时应忽略消息
+
+         @param what 消息类型
+         */
+        void onDeliver(int what);
+    }
+}
@@ -0,0 +1,297 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.executor.FileExecutor;
+import com.harreke.easyapp.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ 由 huoqisheng 于 2017/4/12 创建
+
+ 流式下载文件的执行器
+
+ 响应体通过Okio逐段写入与目标文件同目录的临时文件，内存占用与文件大小无关；
+ 临时文件在下载中断后保留，下次执行时通过Range/If-Range续传，下载完成后再重命名为目标文件；
+ 设置了{@link #segments(int)}时先尝试由{@link OkHttpSegmentDownloader}多连接分段下载，服务器不支持时退回单连接下载；
+ 单连接下载由{@link OkHttpRetryCall}按{@link #retryPolicy(com.harreke.easyapp.network.RetryPolicy)}重试，开始写入临时文件后失败不再重试，留待下次执行续传
+ */
+public class OkHttpFileExecutor extends FileExecutor {
+    private static final int FAILURE = -1;
+    /**
+     每次从响应体读取的最大字节数
+     */
+    private static final long READ_SIZE = 8192L;
+    private static final int PROGRESS = 1;
+    private static final int SUCCESS = 0;
+    private static final String SUFFIX_SEGMENTS = ".segments";
+    private static final String SUFFIX_TEMP = ".download";
+    private static final String SUFFIX_VALIDATOR = ".validator";
+    private OkHttpSegmentDownloader mDownloader;
+    private OkHttpRetryCall mRetryCall;
+    /**
+     当前执行的分发目标，每次执行时重新创建
+     */
+    private Target mTarget = null;
+
+    @Override
+    public synchronized void cancel() {
+        if (mRetryCall != null) {
+            mRetryCall.cancel();
+            mRetryCall = null;
+        }
+        if (mDownloader != null) {
+            mDownloader.cancel();
+            mDownloader = null;
+        }
+        if (mTarget != null) {
+            OkHttpDelivery.getInstance().remove(mTarget);
+            mTarget.mProgressReporter.disable();
+            mTarget = null;
+        }
+    }
+
+    @Override
+    public synchronized void execute(@NonNull Context context) {
+        cancel();
+        RequestBuilder requestBuilder = getRequestBuilder();
+        final File file = getFile();
+        if (requestBuilder == null || file == null) {
+            return;
+        }
+        String requestUrl = requestBuilder.getUrl();
+        if (requestUrl == null) {
+            return;
+        }
+        Headers headers = OkHttpClientHelper.getHeaders(requestBuilder);
+        RequestBody requestBody = OkHttpClientHelper.getFormBody(requestBuilder);
+        final Request request = OkHttpClientHelper.getInstance()
+                .newRequest(requestBuilder.getTag(), requestUrl, headers, requestBody, requestBuilder.getCachePolicy())
+                .newBuilder()
+                // 大文件不写入Http缓存
+                .cacheControl(new CacheControl.Builder().noStore().build())
+                .build();
+        final Target target = new Target();
+        mTarget = target;
+        int maxSegments = getMaxSegments();
+        if (maxSegments > 1 && requestBody == null) {
+            File segmentsFile = new File(file.getAbsolutePath() + SUFFIX_SEGMENTS);
+            mDownloader = new OkHttpSegmentDownloader(request, file, segmentsFile, maxSegments, new OkHttpSegmentDownloader.IListener() {
+                @Override
+                public void onFailure(@Nullable Throwable cause, int attempts) {
+                    target.sendFailure(cause, attempts);
+                }
+
+                @Override
+                public void onProgress(long progress, long total) {
+                    target.mProgressReporter.onProgress(progress, total);
+                }
+
+                @Override
+                public void onSuccess() {
+                    target.sendResult(file);
+                }
+
+                @Override
+                public void onUnsupported() {
+                    executeStream(target, request, file, true);
+                }
+            });
+            mDownloader.start();
+        } else {
+            executeStream(target, request, file, requestBody == null);
+        }
+    }
+
+    /**
+     单连接流式下载，可续传时从临时文件末尾继续
+     */
+    private void executeStream(@NonNull final Target target, @NonNull Request request, @NonNull final File file, boolean resumable) {
+        final File tempFile = new File(file.getAbsolutePath() + SUFFIX_TEMP);
+        final File validatorFile = new File(file.getAbsolutePath() + SUFFIX_VALIDATOR);
+        Request.Builder builder = request.newBuilder();
+        final long offset = resumable && tempFile.isFile() ? tempFile.length() : 0L;
+        if (offset > 0L) {
+            builder.header("Range", "bytes=" + offset + "-");
+            String validator = FileUtil.readTxt(validatorFile);
+            if (validator != null && validator.length() > 0) {
+                builder.header("If-Range", validator);
+            }
+        }
+        synchronized (this) {
+            if (mTarget != target) {
+                // 在等待分段下载结果时已被取消
+                return;
+            }
+            // 重试发生在读取响应体之前，每次尝试使用相同的续传区间
+            mRetryCall = new OkHttpRetryCall(builder.build(), getPriority(), getRetryPolicy(), new OkHttpRetryCall.IListener() {
+                @Override
+                public void onFailure(@NonNull IOException e, int attempts) {
+                    target.sendFailure(e, attempts);
+                }
+
+                @Override
+                public void onResponse(@NonNull Response response, int attempts) throws IOException {
+                    try {
+                        if (download(target, response, file, tempFile, validatorFile, offset)) {
+                            target.mAttempts = attempts;
+                            target.sendResult(file);
+                        } else {
+                            target.sendFailure(null, attempts);
+                        }
+                    } catch (IOException e) {
+                        target.sendFailure(e, attempts);
+                    } finally {
+                        response.close();
+                    }
+                }
+            });
+            mRetryCall.start();
+        }
+    }
+
+    private boolean download(@NonNull Target target, @NonNull Response response, @NonNull File file, @NonNull File tempFile, @NonNull File validatorFile,
+            long offset) throws IOException {
+        int code = response.code();
+        if (code == 416) {
+            // 续传区间无效，丢弃临时文件，下次从头下载
+            FileUtil.deleteFile(tempFile);
+            FileUtil.deleteFile(validatorFile);
+            return false;
+        }
+        if (!response.isSuccessful()) {
+            return false;
+        }
+        boolean append = code == 206 && offset > 0L;
+        String validator = response.header("ETag");
+        if (validator == null || validator.startsWith("W/")) {
+            validator = response.header("Last-Modified");
+        }
+        if (!append) {
+            offset = 0L;
+            FileUtil.deleteFile(validatorFile);
+            if (validator != null) {
+                FileUtil.writeTxt(validatorFile, validator);
+            }
+        }
+        ResponseBody body = response.body();
+        long contentLength = body.contentLength();
+        long total = contentLength < 0L ? -1L : offset + contentLength;
+        long progress = offset;
+        BufferedSource source = body.source();
+        Buffer buffer = new Buffer();
+        Sink sink = append ? Okio.appendingSink(tempFile) : Okio.sink(tempFile);
+        try {
+            long read;
+            while ((read = source.read(buffer, READ_SIZE)) != -1L) {
+                // Okio在Buffer之间移动的是数据段，不会复制字节
+                sink.write(buffer, read);
+                progress += read;
+                target.mProgressReporter.onProgress(progress, total);
+            }
+        } finally {
+            sink.close();
+        }
+        if (total > 0L && progress != total) {
+            return false;
+        }
+        // 同一目录下的重命名是原子操作，会直接替换已存在的目标文件
+        if (!tempFile.renameTo(file)) {
+            return false;
+        }
+        FileUtil.deleteFile(validatorFile);
+
+        return true;
+    }
+
+    @Override
+    public boolean isExecuting() {
+        return mDownloader != null || mRetryCall != null;
+    }
+
+    @Override
+    protected void onPriorityChanged() {
+        if (mRetryCall != null) {
+            mRetryCall.setPriority(getPriority());
+        }
+    }
+
+    /**
+     一次执行的分发目标，保存该次执行的结果；只有仍是当前目标时才分发，取消后旧目标发出的消息被忽略
+     */
+    private class Target implements OkHttpDelivery.ITarget {
+        private volatile int mAttempts = 1;
+        private volatile Throwable mCause = null;
+        private OkHttpProgressReporter mProgressReporter = new OkHttpProgressReporter(this, PROGRESS);
+        private volatile Object mResult = null;
+
+        @Override
+        public Executor getExecutor() {
+            return OkHttpDelivery.getExecutor(getDeliveryPolicy(), getDeliveryExecutor());
+        }
+
+        @Override
+        public String getTag() {
+            RequestBuilder requestBuilder = getRequestBuilder();
+
+            return requestBuilder == null ? null : requestBuilder.getTag();
+        }
+
+        @Override
+        public void onDeliver(int what) {
+            // 不在主线程分发时，与取消互斥
+            synchronized (OkHttpFileExecutor.this) {
+                if (mTarget != this) {
+                    return;
+                }
+                if (what == PROGRESS) {
+                    mProgressReporter.deliver(getProgressCallback());
+                    return;
+                }
+                IRequestCallback<?> requestCallback = getResultCallback();
+                if (requestCallback != null) {
+                    if (what == SUCCESS) {
+                        notifySuccess(requestCallback, mResult);
+                    } else {
+                        notifyFailure(requestCallback, mCause, mAttempts);
+                    }
+                }
+                destroy();
+            }
+        }
+
+        private void sendFailure(Throwable cause, int attempts) {
+            mAttempts = attempts;
+            mCause = cause;
+            OkHttpDelivery.getInstance().post(this, FAILURE);
+        }
+
+        private void sendResult(File file) {
+            try {
+                mResult = transformResult(file);
+            } catch (Exception e) {
+                sendFailure(e, mAttempts);
+                return;
+            }
+            OkHttpDelivery.getInstance().post(this, SUCCESS);
+        }
+    }
+}
\ No newline at end of file
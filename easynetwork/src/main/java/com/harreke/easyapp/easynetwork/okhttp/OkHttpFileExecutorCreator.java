@@ -0,0 +1,21 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.app.Application;
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.creator.IExecutorCreator;
+import com.harreke.easyapp.network.executor.FileExecutor;
+
+/**
+ 由 huoqisheng 于 2017/4/12 创建
+ */
+
+public class OkHttpFileExecutorCreator implements IExecutorCreator<FileExecutor> {
+    public OkHttpFileExecutorCreator(@NonNull Application application) {
+    }
+
+    @Override
+    public FileExecutor create() {
+        return new OkHttpFileExecutor();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ 由 huoqisheng 于 2017/4/26 创建
+
+ 写出时以gzip压缩的请求体
+
+ 压缩在写出过程中逐段进行，不会先把整个请求体压缩到内存中；压缩后的长度事先未知，请求以分块传输编码发送
+ */
+class OkHttpGzipRequestBody extends RequestBody {
+    private RequestBody mDelegate;
+
+    OkHttpGzipRequestBody(@NonNull RequestBody delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1L;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+
+        mDelegate.writeTo(gzipSink);
+        // 关闭时写出gzip尾部
+        gzipSink.close();
+    }
+}
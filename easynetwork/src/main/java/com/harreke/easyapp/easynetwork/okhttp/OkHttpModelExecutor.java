@@ -0,0 +1,156 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.executor.ModelExecutor;
+import com.harreke.easyapp.util.JsonUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/10 创建
+
+ 在OkHttp工作线程中直接从响应字符流解析Json，不会先将响应读取为字符串
+ */
+public class OkHttpModelExecutor<MODEL> extends ModelExecutor<MODEL> {
+    private static final int FAILURE = -1;
+    private static final int PROGRESS = 1;
+    private static final int SUCCESS = 0;
+    private OkHttpCallCoalescer.Subscription<MODEL> mSubscription;
+    /**
+     当前执行的分发目标，每次执行时重新创建
+     */
+    private Target mTarget = null;
+
+    @Override
+    public synchronized void cancel() {
+        if (mSubscription != null) {
+            mSubscription.cancel();
+            mSubscription = null;
+        }
+        if (mTarget != null) {
+            OkHttpDelivery.getInstance().remove(mTarget);
+            mTarget.mProgressReporter.disable();
+            mTarget = null;
+        }
+    }
+
+    @Override
+    public synchronized void execute(@NonNull Context context) {
+        cancel();
+        RequestBuilder requestBuilder = getRequestBuilder();
+        final Type modelType = getModelType();
+        if (requestBuilder == null || modelType == null) {
+            return;
+        }
+        String requestUrl = requestBuilder.getUrl();
+        if (requestUrl == null) {
+            return;
+        }
+        Headers headers = OkHttpClientHelper.getHeaders(requestBuilder);
+        RequestBody requestBody = OkHttpClientHelper.getFormBody(requestBuilder);
+        Request request = OkHttpClientHelper.getInstance().newRequest(requestBuilder.getTag(), requestUrl, headers, requestBody, requestBuilder.getCachePolicy());
+        mTarget = new Target();
+        String key = OkHttpCallCoalescer.getKey("Model " + modelType, requestBuilder);
+        mSubscription = OkHttpCallCoalescer.getInstance().subscribe(key, request, getPriority(), getRetryPolicy(), new IResponseReader<MODEL>() {
+            @Override
+            public MODEL read(@NonNull Response response) throws IOException {
+                MODEL model = JsonUtil.toObject(response.body().charStream(), modelType);
+                if (model == null) {
+                    throw new IOException("Cannot parse response as " + modelType);
+                }
+                return model;
+            }
+        }, mTarget);
+    }
+
+    @Override
+    public boolean isExecuting() {
+        return mSubscription != null && mSubscription.isActive();
+    }
+
+    @Override
+    protected void onPriorityChanged() {
+        if (mSubscription != null) {
+            mSubscription.setPriority(getPriority());
+        }
+    }
+
+    /**
+     一次执行的分发目标与订阅者，保存该次执行的结果；只有仍是当前目标时才分发，取消后旧目标发出的消息被忽略
+     */
+    private class Target implements OkHttpDelivery.ITarget, ICallSubscriber<MODEL> {
+        private volatile int mAttempts = 0;
+        private volatile Throwable mCause = null;
+        private OkHttpProgressReporter mProgressReporter = new OkHttpProgressReporter(this, PROGRESS);
+        private volatile Object mResult = null;
+
+        @Override
+        public Executor getExecutor() {
+            return OkHttpDelivery.getExecutor(getDeliveryPolicy(), getDeliveryExecutor());
+        }
+
+        @Override
+        public String getTag() {
+            RequestBuilder requestBuilder = getRequestBuilder();
+
+            return requestBuilder == null ? null : requestBuilder.getTag();
+        }
+
+        @Override
+        public void onDeliver(int what) {
+            // 不在主线程分发时，与取消互斥
+            synchronized (OkHttpModelExecutor.this) {
+                if (mTarget != this) {
+                    return;
+                }
+                if (what == PROGRESS) {
+                    mProgressReporter.deliver(getProgressCallback());
+                    return;
+                }
+                IRequestCallback<?> requestCallback = getResultCallback();
+                if (requestCallback != null) {
+                    if (what == SUCCESS) {
+                        notifySuccess(requestCallback, mResult);
+                    } else {
+                        notifyFailure(requestCallback, mCause, mAttempts);
+                    }
+                }
+                destroy();
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Throwable cause, int attempts) {
+            mCause = cause;
+            mAttempts = attempts;
+            OkHttpDelivery.getInstance().post(this, FAILURE);
+        }
+
+        @Override
+        public void onProgress(long progress, long total) {
+            mProgressReporter.onProgress(progress, total);
+        }
+
+        @Override
+        public void onSuccess(MODEL result, int attempts) {
+            try {
+                mResult = transformResult(result);
+            } catch (Exception e) {
+                onFailure(e, attempts);
+                return;
+            }
+            OkHttpDelivery.getInstance().post(this, SUCCESS);
+        }
+    }
+}
\ No newline at end of file
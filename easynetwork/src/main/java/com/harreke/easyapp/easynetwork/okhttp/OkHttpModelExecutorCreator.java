@@ -0,0 +1,21 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.app.Application;
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.creator.IExecutorCreator;
+import com.harreke.easyapp.network.executor.ModelExecutor;
+
+/**
+ 由 huoqisheng 于 2017/4/10 创建
+ */
+
+public class OkHttpModelExecutorCreator implements IExecutorCreator<ModelExecutor<?>> {
+    public OkHttpModelExecutorCreator(@NonNull Application application) {
+    }
+
+    @Override
+    public ModelExecutor<?> create() {
+        return new OkHttpModelExecutor<>();
+    }
+}
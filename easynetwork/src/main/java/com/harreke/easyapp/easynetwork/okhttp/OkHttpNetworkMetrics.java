@@ -0,0 +1,312 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.INetworkMetrics;
+import com.harreke.easyapp.network.NetworkHistogram;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/25 创建
+
+ 基于OkHttp EventListener的网络耗时统计
+
+ 每个请求由单独的监听器记录各阶段的时间点，阶段结束时计入请求标签对应的分布；分布只使用原子变量更新，记录时不加锁。
+ 标签数量达到上限后，新的标签统一计入{@link #TAG_OVERFLOW}，避免以URL等作为标签时无限增长。
+ 关闭时返回{@link EventListener#NONE}，不会为请求创建监听器
+ */
+public class OkHttpNetworkMetrics implements INetworkMetrics, EventListener.Factory {
+    /**
+     分布的区间数，最后一个区间从约65秒开始
+     */
+    private static final int BUCKET_COUNT = 18;
+    /**
+     分别统计的标签数上限，并发创建时可能略微超出
+     */
+    private static final int MAX_TAG_COUNT = 64;
+    /**
+     估计百分位数所需的最少样本数
+     */
+    private static final long MIN_SAMPLE_COUNT = 20L;
+    private static final Phase[] PHASES = Phase.values();
+    /**
+     没有标签的请求计入的标签
+     */
+    private static final String TAG_NONE = "";
+    /**
+     标签数量超出上限后计入的标签
+     */
+    public static final String TAG_OVERFLOW = "(overflow)";
+    private volatile static OkHttpNetworkMetrics mInstance = null;
+    private volatile boolean mEnabled = false;
+    private final ConcurrentMap<String, Recorder[]> mRecorderMap = new ConcurrentHashMap<>();
+
+    private OkHttpNetworkMetrics() {
+    }
+
+    public static OkHttpNetworkMetrics getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpNetworkMetrics.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpNetworkMetrics();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        if (!mEnabled) {
+            return EventListener.NONE;
+        }
+        Object tag = call.request().tag();
+
+        // 未设置标签时OkHttp以请求本身作为标签
+        return new CallListener(tag instanceof String ? (String) tag : TAG_NONE);
+    }
+
+    @NonNull
+    @Override
+    public String export() {
+        StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<String, Map<Phase, NetworkHistogram>> entry : new TreeMap<>(snapshot()).entrySet()) {
+            for (Map.Entry<Phase, NetworkHistogram> phase : entry.getValue().entrySet()) {
+                builder.append(entry.getKey()).append(' ').append(phase.getKey().name()).append(' ').append(phase.getValue()).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private Recorder[] getRecorders(@NonNull String tag) {
+        Recorder[] recorders = mRecorderMap.get(tag);
+
+        if (recorders == null && mRecorderMap.size() >= MAX_TAG_COUNT) {
+            tag = TAG_OVERFLOW;
+            recorders = mRecorderMap.get(tag);
+        }
+        if (recorders == null) {
+            Recorder[] created = new Recorder[PHASES.length];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new Recorder();
+            }
+            recorders = mRecorderMap.putIfAbsent(tag, created);
+            if (recorders == null) {
+                recorders = created;
+            }
+        }
+
+        return recorders;
+    }
+
+    /**
+     获得标签某一阶段耗时的百分位数，不创建快照以外的对象
+
+     @param tag 请求的标签
+     @param phase 阶段
+     @param percentile 百分位，0到100
+
+     @return 耗时（毫秒），没有足够的样本时返回0
+     */
+    long getPercentile(@Nullable String tag, @NonNull Phase phase, double percentile) {
+        Recorder[] recorders = mRecorderMap.get(tag == null ? TAG_NONE : tag);
+
+        if (recorders == null || recorders[phase.ordinal()].mCount.get() < MIN_SAMPLE_COUNT) {
+            return 0L;
+        }
+
+        return recorders[phase.ordinal()].snapshot().getPercentile(percentile);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     记录一次耗时
+
+     @param tag 请求的标签
+     @param phase 阶段
+     @param millis 耗时（毫秒）
+     */
+    void record(@Nullable String tag, @NonNull Phase phase, long millis) {
+        if (mEnabled) {
+            getRecorders(tag == null ? TAG_NONE : tag)[phase.ordinal()].record(millis);
+        }
+    }
+
+    @Override
+    public void reset() {
+        mRecorderMap.clear();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Map<Phase, NetworkHistogram>> snapshot() {
+        Map<String, Map<Phase, NetworkHistogram>> snapshot = new TreeMap<>();
+
+        for (Map.Entry<String, Recorder[]> entry : mRecorderMap.entrySet()) {
+            Map<Phase, NetworkHistogram> histogramMap = new EnumMap<>(Phase.class);
+            Recorder[] recorders = entry.getValue();
+            for (int i = 0; i < recorders.length; i++) {
+                if (recorders[i].mCount.get() > 0L) {
+                    histogramMap.put(PHASES[i], recorders[i].snapshot());
+                }
+            }
+            snapshot.put(entry.getKey(), histogramMap);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     单个阶段的分布，只使用原子变量更新
+     */
+    private static class Recorder {
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+
+        private void record(long millis) {
+            long max;
+
+            if (millis < 0L) {
+                millis = 0L;
+            }
+            // 第i个区间为[2^(i-1), 2^i)
+            mBuckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKET_COUNT - 1));
+            mCount.incrementAndGet();
+            mSum.addAndGet(millis);
+            do {
+                max = mMax.get();
+            } while (millis > max && !mMax.compareAndSet(max, millis));
+        }
+
+        private NetworkHistogram snapshot() {
+            long[] buckets = new long[BUCKET_COUNT];
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = mBuckets.get(i);
+            }
+
+            return new NetworkHistogram(buckets, mCount.get(), mSum.get(), mMax.get());
+        }
+    }
+
+    /**
+     单个请求的监听器，同一请求的事件按顺序发生，不需要同步
+     */
+    private class CallListener extends EventListener {
+        private long mConnectStart = 0L;
+        private long mDnsStart = 0L;
+        private long mRequestEnd = 0L;
+        private long mRequestStart = 0L;
+        private long mResponseBodyStart = 0L;
+        private long mSecureConnectStart = 0L;
+        private String mTag;
+
+        private CallListener(@NonNull String tag) {
+            mTag = tag;
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            record(Phase.Connect, mConnectStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            mConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            record(Phase.Dns, mDnsStart);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            mDnsStart = System.nanoTime();
+        }
+
+        private void record(@NonNull Phase phase, long start) {
+            if (start > 0L) {
+                OkHttpNetworkMetrics.this.record(mTag, phase, (System.nanoTime() - start) / 1000000L);
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            mRequestEnd = System.nanoTime();
+            record(Phase.RequestWrite, mRequestStart);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            // 没有请求体时请求在写出请求头后结束，有请求体时由requestBodyEnd覆盖
+            mRequestEnd = System.nanoTime();
+            if (request.body() == null) {
+                record(Phase.RequestWrite, mRequestStart);
+            }
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            mRequestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            record(Phase.BodyRead, mResponseBodyStart);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            mResponseBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            record(Phase.FirstByte, mRequestEnd);
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            record(Phase.Tls, mSecureConnectStart);
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            mSecureConnectStart = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.IPooledBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ 由 huoqisheng 于 2017/5/1 创建
+
+ 由{@link OkHttpBufferPool}的分段组成的只读缓冲区，除最后一段外每段都是满的
+
+ 释放与读取以缓冲区自身为锁互斥，分段不会在复制途中被归还；释放后已打开的流读取时抛出IOException
+ */
+class OkHttpPooledBuffer implements IPooledBuffer {
+    private final long mLength;
+    private volatile boolean mReleased = false;
+    private final List<byte[]> mSegmentList;
+
+    OkHttpPooledBuffer(@NonNull List<byte[]> segmentList, long length) {
+        mSegmentList = segmentList;
+        mLength = length;
+    }
+
+    @Override
+    public long getLength() {
+        return mLength;
+    }
+
+    @NonNull
+    @Override
+    public InputStream openStream() {
+        if (mReleased) {
+            throw new IllegalStateException("Buffer already released");
+        }
+
+        return new SegmentInputStream();
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mReleased) {
+            return;
+        }
+        mReleased = true;
+        OkHttpBufferPool.getInstance().recycle(mSegmentList);
+    }
+
+    /**
+     依次读取各分段的输入流，不复制分段
+     */
+    private class SegmentInputStream extends InputStream {
+        private long mPosition = 0L;
+
+        @Override
+        public int available() {
+            return (int) Math.min(mLength - mPosition, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (OkHttpPooledBuffer.this) {
+                if (mReleased) {
+                    throw new IOException("Buffer already released");
+                }
+                if (mPosition >= mLength) {
+                    return -1;
+                }
+                byte[] segment = mSegmentList.get((int) (mPosition / OkHttpBufferPool.SEGMENT_SIZE));
+                int value = segment[(int) (mPosition % OkHttpBufferPool.SEGMENT_SIZE)] & 0xff;
+                mPosition++;
+
+                return value;
+            }
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+            synchronized (OkHttpPooledBuffer.this) {
+                if (mReleased) {
+                    throw new IOException("Buffer already released");
+                }
+                if (count == 0) {
+                    return 0;
+                }
+                if (mPosition >= mLength) {
+                    return -1;
+                }
+                int segmentOffset = (int) (mPosition % OkHttpBufferPool.SEGMENT_SIZE);
+                byte[] segment = mSegmentList.get((int) (mPosition / OkHttpBufferPool.SEGMENT_SIZE));
+                // 每次最多读到当前分段的末尾
+                int read = (int) Math.min(Math.min(count, OkHttpBufferPool.SEGMENT_SIZE - segmentOffset), mLength - mPosition);
+                System.arraycopy(segment, segmentOffset, buffer, offset, read);
+                mPosition += read;
+
+                return read;
+            }
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = Math.max(0L, Math.min(count, mLength - mPosition));
+
+            mPosition += skipped;
+
+            return skipped;
+        }
+    }
+}
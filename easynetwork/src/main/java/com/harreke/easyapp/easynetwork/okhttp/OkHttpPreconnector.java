@@ -0,0 +1,89 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.RequestPriority;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/28 创建
+
+ 连接预热
+
+ 在后台线程中解析域名，再通过共享的OkHttpClient向每个主机发送一个HEAD请求，请求结束后连接留在连接池中，
+ 之后对同一主机的第一个请求不再需要DNS、TCP与TLS握手。预热请求的标签为{@link #TAG}，
+ 开启{@link OkHttpNetworkMetrics}后可以对比预热请求与业务请求在Dns、Connect与Tls阶段的耗时
+ */
+public class OkHttpPreconnector {
+    /**
+     最多预热的主机数，与OkHttp连接池默认保留的空闲连接数一致，超出的连接会被连接池立即关闭
+     */
+    private static final int MAX_HOSTS = 5;
+    public static final String TAG = "preconnect";
+
+    private OkHttpPreconnector() {
+    }
+
+    /**
+     预热到主机的连接，立即返回
+
+     @param hosts 主机，可以是完整链接（如https://api.example.com）或只有域名（默认使用https）
+     */
+    public static void preconnect(@NonNull String... hosts) {
+        final Set<HttpUrl> urlSet = new LinkedHashSet<>();
+
+        for (String host : hosts) {
+            HttpUrl url = HttpUrl.parse(host.contains("://") ? host : "https://" + host);
+            if (url != null && urlSet.size() < MAX_HOSTS) {
+                // 只保留协议、主机与端口，同一个连接池条目只预热一次
+                urlSet.add(url.newBuilder().encodedPath("/").query(null).fragment(null).build());
+            }
+        }
+        if (urlSet.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (HttpUrl url : urlSet) {
+                    try {
+                        // 系统会缓存解析结果，OkHttp建立连接时直接命中
+                        InetAddress.getAllByName(url.host());
+                    } catch (UnknownHostException e) {
+                        continue;
+                    }
+                    warm(url);
+                }
+            }
+        }, "OkHttpPreconnector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void warm(@NonNull HttpUrl url) {
+        Request request = new Request.Builder().url(url).head().tag(TAG).build();
+
+        OkHttpScheduler.getInstance().schedule(OkHttpClientHelper.getInstance().newCall(request), RequestPriority.Prefetch, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // 关闭响应后连接归还连接池
+                response.close();
+            }
+        });
+    }
+}
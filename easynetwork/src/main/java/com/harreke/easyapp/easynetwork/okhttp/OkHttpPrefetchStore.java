@@ -0,0 +1,181 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ 由 huoqisheng 于 2017/4/29 创建
+
+ 预取结果的内存存储
+
+ 以发出的GET请求的完整链接与Header为键（不是重定向后的链接），结果只能被取出一次，超过{@link #TTL}毫秒的结果视为过期；
+ 总大小不超过字节预算，取出或丢弃结果后释放预算
+ */
+class OkHttpPrefetchStore {
+    /**
+     预取结果的有效时间
+     */
+    private static final long TTL = 5L * 60L * 1000L;
+    private volatile static OkHttpPrefetchStore mInstance = null;
+    private long mByteBudget = 2L * 1024L * 1024L;
+    private long mBytes = 0L;
+    private final Map<String, Entry> mEntryMap = new LinkedHashMap<>();
+
+    private OkHttpPrefetchStore() {
+    }
+
+    static OkHttpPrefetchStore getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpPrefetchStore.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpPrefetchStore();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    /**
+     生成请求的键，相同链接但Header不同（如语言、认证信息）的请求不会取到彼此的结果
+
+     @param request 发出的请求
+
+     @return 键
+     */
+    static String getKey(@NonNull Request request) {
+        return request.url().toString() + "\n" + request.headers().toString();
+    }
+
+    synchronized boolean contains(@NonNull String key) {
+        Entry entry = mEntryMap.get(key);
+
+        return entry != null && SystemClock.elapsedRealtime() - entry.mTime < TTL;
+    }
+
+    /**
+     获得剩余的字节预算
+     */
+    synchronized long getRemaining() {
+        Iterator<Entry> iterator = mEntryMap.values().iterator();
+        long now = SystemClock.elapsedRealtime();
+
+        // 顺便释放过期结果占用的预算
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.mTime >= TTL) {
+                iterator.remove();
+                mBytes -= entry.mBody.length;
+            }
+        }
+
+        return mByteBudget - mBytes;
+    }
+
+    /**
+     保存预取的结果
+
+     @param key 由{@link #getKey(Request)}生成的键，使用发出的请求生成，不使用重定向后的请求
+
+     @return 是否保存，超出预算时不保存
+     */
+    synchronized boolean put(@NonNull String group, @NonNull String key, @NonNull Response response, @NonNull byte[] body) {
+        Entry old = mEntryMap.get(key);
+
+        if (mBytes - (old == null ? 0L : old.mBody.length) + body.length > mByteBudget) {
+            return false;
+        }
+        if (old != null) {
+            mBytes -= old.mBody.length;
+        }
+        mEntryMap.put(key, new Entry(group, response, body));
+        mBytes += body.length;
+
+        return true;
+    }
+
+    synchronized void remove(@NonNull String group) {
+        Iterator<Entry> iterator = mEntryMap.values().iterator();
+
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mGroup.equals(group)) {
+                iterator.remove();
+                mBytes -= entry.mBody.length;
+            }
+        }
+    }
+
+    synchronized void setByteBudget(long byteBudget) {
+        mByteBudget = byteBudget;
+    }
+
+    /**
+     取出请求对应的预取结果
+
+     @param request 请求，只有GET请求会使用预取结果
+
+     @return 以预取结果构造的响应，没有可用的结果时为null
+     */
+    @Nullable
+    Response take(@NonNull Request request) {
+        Entry entry;
+
+        if (!"GET".equals(request.method())) {
+            return null;
+        }
+        synchronized (this) {
+            entry = mEntryMap.remove(getKey(request));
+            if (entry == null) {
+                return null;
+            }
+            mBytes -= entry.mBody.length;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mTime >= TTL) {
+            return null;
+        }
+        Response.Builder builder = new Response.Builder().request(request)
+                .protocol(entry.mProtocol)
+                .code(entry.mCode)
+                .message(entry.mMessage)
+                .headers(entry.mHeaders);
+        // 结果来自之前的网络响应，设置networkResponse以免被当作缓存未命中
+        Response networkResponse = builder.build();
+
+        return builder.networkResponse(networkResponse).body(ResponseBody.create(entry.mContentType, entry.mBody)).build();
+    }
+
+    private static class Entry {
+        private byte[] mBody;
+        private int mCode;
+        private MediaType mContentType;
+        private String mGroup;
+        private Headers mHeaders;
+        private String mMessage;
+        private Protocol mProtocol;
+        private long mTime;
+
+        private Entry(@NonNull String group, @NonNull Response response, @NonNull byte[] body) {
+            mGroup = group;
+            mCode = response.code();
+            mMessage = response.message();
+            mProtocol = response.protocol();
+            mHeaders = response.headers();
+            mContentType = response.body() == null ? null : response.body().contentType();
+            mBody = body;
+            mTime = SystemClock.elapsedRealtime();
+        }
+    }
+}
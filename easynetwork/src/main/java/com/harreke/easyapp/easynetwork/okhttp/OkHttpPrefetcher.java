@@ -0,0 +1,267 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.annotation.NonNull;
+import android.telephony.TelephonyManager;
+
+import com.harreke.easyapp.network.CachePolicy;
+import com.harreke.easyapp.network.IPrefetcher;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RequestPriority;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ 由 huoqisheng 于 2017/4/29 创建
+
+ 基于OkHttp的预取器
+
+ 预取请求按加入顺序排队，只有{@link OkHttpScheduler}中没有其他优先级的请求、且当前网络不计流量或为4G时才以{@link RequestPriority#Prefetch}发出，
+ 否则每隔{@link #CHECK_INTERVAL}毫秒再检查一次；结果保存在{@link OkHttpPrefetchStore}中，由{@link OkHttpCallCoalescer}在发起相同的GET请求时取出
+ */
+public class OkHttpPrefetcher implements IPrefetcher {
+    /**
+     网络不空闲时再次检查的间隔
+     */
+    private static final long CHECK_INTERVAL = 1000L;
+    /**
+     同时进行的最大预取数
+     */
+    private static final int MAX_REQUESTS = 2;
+    private ConnectivityManager mConnectivityManager;
+    private final List<Pending> mPendingList = new LinkedList<>();
+    private boolean mPumpScheduled = false;
+    private final List<Running> mRunningList = new ArrayList<>(MAX_REQUESTS);
+    private ScheduledExecutorService mTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "OkHttpPrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public OkHttpPrefetcher(@NonNull Context context) {
+        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    @Override
+    public void cancel(@NonNull String group) {
+        List<Running> canceledList = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<Pending> pendingIterator = mPendingList.iterator();
+            while (pendingIterator.hasNext()) {
+                if (pendingIterator.next().mGroup.equals(group)) {
+                    pendingIterator.remove();
+                }
+            }
+            // 还在调度器中排队的任务被取消后不会回调，因此在这里移出运行列表，不依赖onFinish
+            Iterator<Running> runningIterator = mRunningList.iterator();
+            while (runningIterator.hasNext()) {
+                Running running = runningIterator.next();
+                if (running.mGroup.equals(group)) {
+                    running.mCanceled = true;
+                    runningIterator.remove();
+                    canceledList.add(running);
+                }
+            }
+        }
+        for (Running running : canceledList) {
+            running.mTask.cancel();
+        }
+        OkHttpPrefetchStore.getInstance().remove(group);
+        schedulePump(0L);
+    }
+
+    /**
+     判断是否可以预取：没有其他优先级的请求，且网络不计流量或为4G
+     */
+    private boolean canPrefetch() {
+        NetworkInfo networkInfo = mConnectivityManager.getActiveNetworkInfo();
+
+        if (networkInfo == null || !networkInfo.isConnected() || !OkHttpScheduler.getInstance().isIdle()) {
+            return false;
+        }
+
+        return !mConnectivityManager.isActiveNetworkMetered() || networkInfo.getSubtype() == TelephonyManager.NETWORK_TYPE_LTE;
+    }
+
+    private void onFinish(@NonNull Running running, Response response) {
+        boolean canceled;
+
+        synchronized (this) {
+            mRunningList.remove(running);
+            canceled = running.mCanceled;
+        }
+        if (response != null) {
+            try {
+                if (!canceled) {
+                    read(running, response);
+                }
+            } finally {
+                response.close();
+            }
+        }
+        schedulePump(0L);
+    }
+
+    @Override
+    public void prefetch(@NonNull String group, @NonNull RequestBuilder requestBuilder) {
+        if (requestBuilder.hasBody() || requestBuilder.getUrl() == null) {
+            return;
+        }
+        Request request;
+        try {
+            request = OkHttpClientHelper.getInstance()
+                    .newRequest(requestBuilder.getTag(), requestBuilder.getUrl(), OkHttpClientHelper.getHeaders(requestBuilder), null,
+                            requestBuilder.getCachePolicy());
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        synchronized (this) {
+            mPendingList.add(new Pending(group, request));
+        }
+        schedulePump(0L);
+    }
+
+    @Override
+    public void prefetch(@NonNull String group, @NonNull String requestUrl) {
+        prefetch(group, new RequestBuilder(group).setUrl(requestUrl).setCachePolicy(CachePolicy.Default));
+    }
+
+    /**
+     在计时线程中发出可以执行的预取
+     */
+    private void pump() {
+        synchronized (this) {
+            mPumpScheduled = false;
+            if (mPendingList.isEmpty() || mRunningList.size() >= MAX_REQUESTS) {
+                return;
+            }
+        }
+        if (!canPrefetch()) {
+            schedulePump(CHECK_INTERVAL);
+            return;
+        }
+        OkHttpPrefetchStore store = OkHttpPrefetchStore.getInstance();
+        while (store.getRemaining() > 0L) {
+            final Running running;
+            synchronized (this) {
+                if (mPendingList.isEmpty() || mRunningList.size() >= MAX_REQUESTS) {
+                    return;
+                }
+                Pending pending = mPendingList.remove(0);
+                String key = OkHttpPrefetchStore.getKey(pending.mRequest);
+                if (store.contains(key)) {
+                    continue;
+                }
+                running = new Running(pending.mGroup, key);
+                mRunningList.add(running);
+                running.mTask = OkHttpScheduler.getInstance()
+                        .schedule(OkHttpClientHelper.getInstance().newCall(pending.mRequest), RequestPriority.Prefetch, new Callback() {
+                            @Override
+                            public void onFailure(Call call, IOException e) {
+                                onFinish(running, null);
+                            }
+
+                            @Override
+                            public void onResponse(Call call, Response response) {
+                                onFinish(running, response);
+                            }
+                        });
+            }
+        }
+        // 预算已用完，等待预取的结果被取出或过期后再继续
+        schedulePump(CHECK_INTERVAL);
+    }
+
+    /**
+     读取响应体并保存，超出剩余预算的响应体会被丢弃；读取期间被取消时不保存
+     */
+    private void read(@NonNull Running running, @NonNull Response response) {
+        OkHttpPrefetchStore store = OkHttpPrefetchStore.getInstance();
+        ResponseBody body = response.body();
+        long remaining = store.getRemaining();
+
+        if (!response.isSuccessful() || body == null || body.contentLength() > remaining) {
+            return;
+        }
+        try {
+            BufferedSource source = body.source();
+            // 能读到超过剩余预算的数据时放弃，不把整个响应体读入内存
+            if (source.request(remaining + 1L)) {
+                return;
+            }
+            byte[] bytes = source.readByteArray();
+            // 与cancel在同一把锁下检查：先保存的结果会被cancel随后的remove移除，已取消时不再保存
+            synchronized (this) {
+                if (!running.mCanceled) {
+                    store.put(running.mGroup, running.mKey, response, bytes);
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private synchronized void schedulePump(long delay) {
+        if (mPumpScheduled) {
+            return;
+        }
+        mPumpScheduled = true;
+        mTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pump();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setByteBudget(long byteBudget) {
+        OkHttpPrefetchStore.getInstance().setByteBudget(byteBudget);
+        schedulePump(0L);
+    }
+
+    private static class Pending {
+        private String mGroup;
+        private Request mRequest;
+
+        private Pending(@NonNull String group, @NonNull Request request) {
+            mGroup = group;
+            mRequest = request;
+        }
+    }
+
+    private static class Running {
+        private boolean mCanceled = false;
+        private String mGroup;
+        /**
+         发出的请求在{@link OkHttpPrefetchStore}中的键
+         */
+        private String mKey;
+        private OkHttpScheduler.Task mTask;
+
+        private Running(@NonNull String group, @NonNull String key) {
+            mGroup = group;
+            mKey = key;
+        }
+    }
+}
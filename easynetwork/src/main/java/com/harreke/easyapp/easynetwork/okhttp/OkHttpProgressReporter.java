@@ -0,0 +1,104 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.IProgressCallback;
+import com.harreke.easyapp.network.IUploadProgressCallback;
+
+/**
+ 由 huoqisheng 于 2017/4/14 创建
+
+ 节流的进度分发器
+
+ 工作线程只更新进度数值，满足间隔（{@link #INTERVAL}毫秒且进度变化至少1%）时才通过{@link OkHttpDelivery}发送一条消息；
+ 同一时刻最多只有一条消息在队列中，处理消息时读取的总是最新的进度，整个过程不会为每段数据分配对象
+ */
+class OkHttpProgressReporter implements IProgressCallback {
+    /**
+     两次进度消息之间的最小间隔
+     */
+    private static final long INTERVAL = 16L;
+    private boolean mDisabled = false;
+    private long mLastPercent = -1L;
+    private long mLastTime = 0L;
+    private boolean mPending = false;
+    private long mProgress = 0L;
+    private OkHttpDelivery.ITarget mTarget;
+    private long mTotal = -1L;
+    private int mWhat;
+
+    OkHttpProgressReporter(@NonNull OkHttpDelivery.ITarget target, int what) {
+        mTarget = target;
+        mWhat = what;
+    }
+
+    /**
+     分发最新的进度，由{@link OkHttpDelivery}处理进度消息时调用
+
+     @param progressCallback 进度回调
+     */
+    void deliver(@Nullable IProgressCallback progressCallback) {
+        deliver(progressCallback, -1);
+    }
+
+    /**
+     分发最新的进度，由{@link OkHttpDelivery}处理进度消息时调用
+
+     @param progressCallback 进度回调
+     @param part 文件部分的序号，不小于0时分发给{@link IUploadProgressCallback#onPartProgress(int, long, long)}
+     */
+    void deliver(@Nullable IProgressCallback progressCallback, int part) {
+        long progress;
+        long total;
+
+        synchronized (this) {
+            mPending = false;
+            progress = mProgress;
+            total = mTotal;
+        }
+        if (part < 0) {
+            if (progressCallback != null) {
+                progressCallback.onProgress(progress, total);
+            }
+        } else if (progressCallback instanceof IUploadProgressCallback) {
+            ((IUploadProgressCallback) progressCallback).onPartProgress(part, progress, total);
+        }
+    }
+
+    /**
+     更新进度，可在任意线程中调用
+
+     @param progress 已传输的字节数
+     @param total 总字节数，未知时为-1
+     */
+    @Override
+    public void onProgress(long progress, long total) {
+        synchronized (this) {
+            mProgress = progress;
+            mTotal = total;
+            if (mDisabled || mPending) {
+                return;
+            }
+            long percent = total > 0L ? progress * 100L / total : -1L;
+            long now = SystemClock.uptimeMillis();
+            if (progress != total && (now - mLastTime < INTERVAL || percent == mLastPercent && total > 0L)) {
+                return;
+            }
+            mLastPercent = percent;
+            mLastTime = now;
+            mPending = true;
+        }
+        OkHttpDelivery.getInstance().post(mTarget, mWhat);
+    }
+
+    /**
+     停用分发器并移除尚未处理的进度消息，之后的进度不再发送；执行被取消后仍在写出或读取数据的线程持有的是停用的分发器
+     */
+    synchronized void disable() {
+        OkHttpDelivery.getInstance().remove(mTarget, mWhat);
+        mDisabled = true;
+        mPending = false;
+    }
+}
\ No newline at end of file
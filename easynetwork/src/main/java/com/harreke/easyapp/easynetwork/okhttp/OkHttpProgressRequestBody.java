@@ -0,0 +1,57 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.IProgressCallback;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ 由 huoqisheng 于 2017/4/14 创建
+
+ 统计已写出字节数的请求体，用于上传进度
+ */
+class OkHttpProgressRequestBody extends RequestBody {
+    private RequestBody mDelegate;
+    private IProgressCallback mProgressCallback;
+
+    OkHttpProgressRequestBody(@NonNull RequestBody delegate, @NonNull IProgressCallback progressCallback) {
+        mDelegate = delegate;
+        mProgressCallback = progressCallback;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return mDelegate.contentLength();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        final long total = contentLength();
+        // 重试时请求体会被重新写出，计数从0开始
+        BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+            private long mProgress = 0L;
+
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                mProgress += byteCount;
+                mProgressCallback.onProgress(mProgress, total);
+            }
+        });
+        mDelegate.writeTo(countingSink);
+        countingSink.flush();
+    }
+}
@@ -0,0 +1,66 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.IProgressCallback;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ 由 huoqisheng 于 2017/4/14 创建
+
+ 统计已读取字节数的响应体，用于下载进度
+ */
+class OkHttpProgressResponseBody extends ResponseBody {
+    private ResponseBody mDelegate;
+    private long mProgress = 0L;
+    private IProgressCallback mProgressCallback;
+    private BufferedSource mSource = null;
+
+    OkHttpProgressResponseBody(@NonNull ResponseBody delegate, @NonNull IProgressCallback progressCallback) {
+        mDelegate = delegate;
+        mProgressCallback = progressCallback;
+    }
+
+    @Override
+    public void close() {
+        mDelegate.close();
+    }
+
+    @Override
+    public long contentLength() {
+        return mDelegate.contentLength();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public BufferedSource source() {
+        if (mSource == null) {
+            final long total = mDelegate.contentLength();
+            mSource = Okio.buffer(new ForwardingSource(mDelegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read != -1L) {
+                        mProgress += read;
+                        mProgressCallback.onProgress(mProgress, total);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        return mSource;
+    }
+}
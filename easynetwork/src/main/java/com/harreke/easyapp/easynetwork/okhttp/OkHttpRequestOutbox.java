@@ -0,0 +1,461 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.fastjson.JSONObject;
+import com.harreke.easyapp.network.CachePolicy;
+import com.harreke.easyapp.network.IRequestOutbox;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RequestPriority;
+import com.harreke.easyapp.network.RetryPolicy;
+import com.harreke.easyapp.util.ConnectionUtil;
+import com.harreke.easyapp.util.JsonUtil;
+import com.harreke.easyapp.util.PackageUtil;
+import com.orhanobut.logger.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/24 创建
+
+ 基于文件的离线请求队列
+
+ 请求以JSON行的形式追加写入{@link PackageUtil#FilesDir}下的队列文件，每次写入后同步到磁盘；发送完成的请求追加一条完成记录，
+ 完成记录过多时重写队列文件。文件读写与发送调度都在单独的后台线程中进行，初始化时不会阻塞主线程。
+ 网络恢复时按加入的顺序分批发送，同时进行的请求数有上限，并以{@link RequestPriority#Prefetch}优先级调度，不影响前台请求；
+ 网络错误或服务器可重试的错误会中止本次发送，按指数退避稍后重新发送，网络恢复时也会立即继续
+ */
+public class OkHttpRequestOutbox implements IRequestOutbox {
+    /**
+     每批发送的请求数
+     */
+    private static final int BATCH_SIZE = 10;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     完成记录超过此数量时重写队列文件
+     */
+    private static final int COMPACT_THRESHOLD = 64;
+    private static final String FILE_NAME = "outbox";
+    private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+    /**
+     同时发送的最大请求数
+     */
+    private static final int MAX_REQUESTS = 2;
+    private static final String OP_ADD = "add";
+    private static final String OP_DONE = "done";
+    private static final RetryPolicy RETRY_POLICY = new RetryPolicy().baseDelay(5000L).maxDelay(5L * 60L * 1000L);
+    private List<JSONObject> mBatch = null;
+    private int mBatchIndex = 0;
+    private List<String> mBatchKeyList = new ArrayList<>(BATCH_SIZE);
+    private boolean mBatchStopped = false;
+    private int mDoneCount = 0;
+    private Map<String, JSONObject> mEntryMap = new LinkedHashMap<>();
+    private ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "OkHttpRequestOutbox");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /**
+     连续中止发送的次数，用于计算退避时间
+     */
+    private int mFailureCount = 0;
+    private File mFile;
+    private int mInFlight = 0;
+    private ScheduledFuture<?> mRetryFuture = null;
+    private volatile int mSize = 0;
+
+    public OkHttpRequestOutbox(@NonNull Context context) {
+        Context applicationContext = context.getApplicationContext();
+
+        mFile = new File(PackageUtil.FilesDir, FILE_NAME);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+        // 注册时会立即收到当前的网络状态，队列加载完成后即开始发送
+        applicationContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                ConnectionUtil.checkConnection(context);
+                if (ConnectionUtil.isConnected()) {
+                    postReplay();
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private static void put(@NonNull JSONObject record, @NonNull String name, @NonNull Map<String, String> map) {
+        if (!map.isEmpty()) {
+            record.put(name, new LinkedHashMap<>(map));
+        }
+    }
+
+    private static void restore(@NonNull JSONObject record, @NonNull String name, @NonNull Map<String, String> map) {
+        JSONObject object = record.getJSONObject(name);
+
+        if (object != null) {
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                map.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     追加写入记录并同步到磁盘，在后台线程中调用
+     */
+    private boolean append(@NonNull List<JSONObject> recordList) {
+        StringBuilder builder = new StringBuilder();
+        FileOutputStream outputStream = null;
+
+        for (JSONObject record : recordList) {
+            builder.append(record.toJSONString()).append('\n');
+        }
+        try {
+            outputStream = new FileOutputStream(mFile, true);
+            outputStream.write(builder.toString().getBytes(CHARSET));
+            outputStream.getFD().sync();
+
+            return true;
+        } catch (IOException e) {
+            Logger.e("Cannot write outbox " + mFile.getAbsolutePath() + "!");
+
+            return false;
+        } finally {
+            close(outputStream);
+        }
+    }
+
+    private void close(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     重写队列文件，只保留未完成的请求，在后台线程中调用
+     */
+    private void compact() {
+        File tempFile = new File(mFile.getAbsolutePath() + ".tmp");
+        FileOutputStream outputStream = null;
+        StringBuilder builder = new StringBuilder();
+
+        for (JSONObject record : mEntryMap.values()) {
+            builder.append(record.toJSONString()).append('\n');
+        }
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            outputStream.write(builder.toString().getBytes(CHARSET));
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            close(outputStream);
+            tempFile.delete();
+            return;
+        }
+        close(outputStream);
+        // 同一目录下的重命名是原子操作，中途被中断时旧文件仍然完整
+        if (tempFile.renameTo(mFile)) {
+            mDoneCount = 0;
+        } else {
+            tempFile.delete();
+        }
+    }
+
+    @Override
+    public void enqueue(@NonNull RequestBuilder requestBuilder, @Nullable String idempotencyKey) {
+        final JSONObject record = new JSONObject(true);
+
+        // 在调用线程中生成记录，调用方之后修改请求构造器不会影响已加入的请求
+        record.put("op", OP_ADD);
+        record.put("key", idempotencyKey == null ? UUID.randomUUID().toString() : idempotencyKey);
+        record.put("tag", requestBuilder.getTag());
+        record.put("host", requestBuilder.getHost());
+        record.put("path", requestBuilder.getPath());
+        record.put("cachePolicy", requestBuilder.getCachePolicy().name());
+        record.put("gzipThreshold", requestBuilder.getGzipThreshold());
+        put(record, "header", requestBuilder.getHeader());
+        put(record, "query", requestBuilder.getQuery());
+        put(record, "body", requestBuilder.getBody());
+        put(record, "multiPart", requestBuilder.getMultiPart());
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String key = record.getString("key");
+                List<JSONObject> recordList = new ArrayList<>(1);
+
+                // 相同幂等键的请求已在队列中
+                if (mEntryMap.containsKey(key)) {
+                    return;
+                }
+                recordList.add(record);
+                if (append(recordList)) {
+                    mEntryMap.put(key, record);
+                    mSize = mEntryMap.size();
+                    replay();
+                }
+            }
+        });
+    }
+
+    /**
+     读取队列文件，在后台线程中调用
+     */
+    private void load() {
+        BufferedReader reader = null;
+        String line;
+
+        if (!mFile.isFile()) {
+            return;
+        }
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), CHARSET));
+            while ((line = reader.readLine()) != null) {
+                // 写入中断时最后一行可能不完整，直接忽略
+                JSONObject record = JsonUtil.toJSONObject(line);
+                if (record == null || record.getString("key") == null) {
+                    continue;
+                }
+                if (OP_ADD.equals(record.getString("op"))) {
+                    if (!mEntryMap.containsKey(record.getString("key"))) {
+                        mEntryMap.put(record.getString("key"), record);
+                    }
+                } else if (OP_DONE.equals(record.getString("op"))) {
+                    mEntryMap.remove(record.getString("key"));
+                    mDoneCount++;
+                }
+            }
+        } catch (IOException e) {
+            Logger.e("Cannot read outbox " + mFile.getAbsolutePath() + "!");
+        } finally {
+            close(reader);
+        }
+        mSize = mEntryMap.size();
+        if (mDoneCount > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private Request newRequest(@NonNull JSONObject record) {
+        RequestBuilder requestBuilder = new RequestBuilder(String.valueOf(record.getString("tag")));
+        Headers.Builder headersBuilder = new Headers.Builder();
+        RequestBody requestBody;
+        CachePolicy cachePolicy;
+
+        requestBuilder.setUrl(record.getString("host"), record.getString("path"));
+        if (record.containsKey("gzipThreshold")) {
+            requestBuilder.setGzipThreshold(record.getLongValue("gzipThreshold"));
+        }
+        restore(record, "header", requestBuilder.getHeader());
+        restore(record, "query", requestBuilder.getQuery());
+        restore(record, "body", requestBuilder.getBody());
+        restore(record, "multiPart", requestBuilder.getMultiPart());
+        for (Map.Entry<String, String> header : requestBuilder.getHeader().entrySet()) {
+            headersBuilder.add(header.getKey(), header.getValue());
+        }
+        headersBuilder.set(HEADER_IDEMPOTENCY_KEY, record.getString("key"));
+        if (requestBuilder.getMultiPart().isEmpty()) {
+            requestBody = OkHttpClientHelper.getFormBody(requestBuilder);
+        } else {
+            MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+            for (Map.Entry<String, String> body : requestBuilder.getBody().entrySet()) {
+                builder.addFormDataPart(body.getKey(), body.getValue());
+            }
+            for (Map.Entry<String, String> multiPart : requestBuilder.getMultiPart().entrySet()) {
+                builder.addFormDataPart(multiPart.getKey(), multiPart.getValue());
+            }
+            requestBody = builder.build();
+        }
+        try {
+            cachePolicy = CachePolicy.valueOf(record.getString("cachePolicy"));
+        } catch (RuntimeException e) {
+            cachePolicy = CachePolicy.Default;
+        }
+
+        return OkHttpClientHelper.getInstance().newRequest(requestBuilder.getTag(), requestBuilder.getUrl(), headersBuilder.build(), requestBody, cachePolicy);
+    }
+
+    /**
+     一个请求发送结束，在后台线程中调用
+
+     @param key 幂等键
+     @param done 是否从队列中移除，为false时中止本次发送
+     */
+    private void onSent(@NonNull String key, boolean done) {
+        mInFlight--;
+        if (done) {
+            mBatchKeyList.add(key);
+        } else {
+            mBatchStopped = true;
+        }
+        sendBatch();
+    }
+
+    private void postReplay() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        });
+    }
+
+    private void postSent(@NonNull final String key, final boolean done) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                onSent(key, done);
+            }
+        });
+    }
+
+    /**
+     开始发送下一批请求，在后台线程中调用
+     */
+    private void replay() {
+        Iterator<JSONObject> iterator;
+
+        if (mBatch != null || mEntryMap.isEmpty() || !ConnectionUtil.isConnected()) {
+            return;
+        }
+        mBatch = new ArrayList<>(BATCH_SIZE);
+        iterator = mEntryMap.values().iterator();
+        while (iterator.hasNext() && mBatch.size() < BATCH_SIZE) {
+            mBatch.add(iterator.next());
+        }
+        mBatchIndex = 0;
+        mBatchKeyList.clear();
+        mBatchStopped = false;
+        sendBatch();
+    }
+
+    /**
+     本次发送被中止，在退避时间后重新发送，在后台线程中调用
+     */
+    private void scheduleRetry() {
+        mFailureCount++;
+        if (mRetryFuture != null) {
+            mRetryFuture.cancel(false);
+        }
+        mRetryFuture = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mRetryFuture = null;
+                replay();
+            }
+        }, RETRY_POLICY.getDelay(mFailureCount), TimeUnit.MILLISECONDS);
+    }
+
+    private void send(@NonNull final JSONObject record) {
+        final String key = record.getString("key");
+        Request request;
+
+        try {
+            request = newRequest(record);
+        } catch (RuntimeException e) {
+            // 链接无效的请求永远无法发送，直接丢弃
+            Logger.e("Drop invalid outbox request " + key + "!");
+            postSent(key, true);
+            return;
+        }
+        OkHttpScheduler.getInstance().schedule(OkHttpClientHelper.getInstance().newCall(request), RequestPriority.Prefetch, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                postSent(key, false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                // 成功或不可重试的错误都视为完成，重发也不会得到不同的结果
+                boolean done = !RETRY_POLICY.isRetryable(response.code());
+
+                response.close();
+                postSent(key, done);
+            }
+        });
+    }
+
+    /**
+     在并发上限内发送当前批次中的请求，批次结束时一次写入所有完成记录，在后台线程中调用
+     */
+    private void sendBatch() {
+        List<JSONObject> recordList;
+
+        while (!mBatchStopped && mInFlight < MAX_REQUESTS && mBatchIndex < mBatch.size()) {
+            mInFlight++;
+            send(mBatch.get(mBatchIndex++));
+        }
+        if (mInFlight > 0 || !mBatchStopped && mBatchIndex < mBatch.size()) {
+            return;
+        }
+        if (!mBatchKeyList.isEmpty()) {
+            recordList = new ArrayList<>(mBatchKeyList.size());
+            for (String key : mBatchKeyList) {
+                JSONObject record = new JSONObject(true);
+                record.put("op", OP_DONE);
+                record.put("key", key);
+                recordList.add(record);
+            }
+            // 写入失败时请求仍会保留在文件中，下次启动时以相同的幂等键重发，由服务器去重
+            append(recordList);
+            for (String key : mBatchKeyList) {
+                mEntryMap.remove(key);
+            }
+            mDoneCount += mBatchKeyList.size();
+            mSize = mEntryMap.size();
+            if (mDoneCount > COMPACT_THRESHOLD) {
+                compact();
+            }
+        }
+        mBatch = null;
+        if (mBatchStopped) {
+            scheduleRetry();
+        } else {
+            mFailureCount = 0;
+            replay();
+        }
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+}
@@ -0,0 +1,259 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.network.HttpStatusException;
+import com.harreke.easyapp.network.INetworkMetrics;
+import com.harreke.easyapp.network.RequestPriority;
+import com.harreke.easyapp.network.RetryPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/21 创建
+
+ 按{@link RetryPolicy}重试与对冲的请求
+
+ 每次尝试都通过{@link OkHttpScheduler}调度；对冲时同时存在两个尝试，先返回成功结果的一个生效，另一个被取消。
+ 无论尝试多少次，监听器都只会收到一次回调；重试用尽后仍是可重试的状态码时回调{@link IListener#onFailure(IOException, int)}
+ */
+class OkHttpRetryCall {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "OkHttpRetryCall");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private int mAttempts = 0;
+    private boolean mFinished = false;
+    private ScheduledFuture<?> mFuture = null;
+    private boolean mIdempotent;
+    private IListener mListener;
+    private RequestPriority mPriority;
+    private Request mRequest;
+    private RetryPolicy mRetryPolicy;
+    private List<OkHttpScheduler.Task> mTaskList = new ArrayList<>(2);
+
+    OkHttpRetryCall(@NonNull Request request, @NonNull RequestPriority priority, @Nullable RetryPolicy retryPolicy, @NonNull IListener listener) {
+        mRequest = request;
+        mPriority = priority;
+        mRetryPolicy = retryPolicy;
+        mListener = listener;
+        mIdempotent = "GET".equals(request.method()) || "HEAD".equals(request.method());
+    }
+
+    private void attempt() {
+        long hedgeDelay;
+        OkHttpScheduler.Task task;
+        RetryPolicy retryPolicy;
+
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mAttempts++;
+            mFuture = null;
+            AttemptCallback callback = new AttemptCallback();
+            // 回调需要先获得锁，因此在这里设置mTask不会有竞争
+            task = OkHttpScheduler.getInstance().schedule(OkHttpClientHelper.getInstance().newCall(mRequest), mPriority, callback);
+            callback.mTask = task;
+            mTaskList.add(task);
+            retryPolicy = mRetryPolicy;
+            // 只对第一次尝试对冲
+            if (retryPolicy != null && mAttempts == 1 && retryPolicy.canRetry(mIdempotent, mAttempts)) {
+                hedgeDelay = getHedgeDelay(retryPolicy);
+                if (hedgeDelay > 0L) {
+                    mFuture = TIMER.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            hedge();
+                        }
+                    }, hedgeDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    void cancel() {
+        List<OkHttpScheduler.Task> taskList;
+
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+                mFuture = null;
+            }
+            taskList = new ArrayList<>(mTaskList);
+            mTaskList.clear();
+        }
+        for (OkHttpScheduler.Task task : taskList) {
+            task.cancel();
+        }
+    }
+
+    /**
+     获得对冲延迟，自动时使用该标签首字节时间的p95
+
+     @param retryPolicy 重试策略
+
+     @return 对冲延迟（毫秒），不大于0时不对冲
+     */
+    private long getHedgeDelay(@NonNull RetryPolicy retryPolicy) {
+        Object tag;
+
+        if (retryPolicy.getHedgeDelay() != RetryPolicy.HEDGE_DELAY_AUTO) {
+            return retryPolicy.getHedgeDelay();
+        }
+        tag = mRequest.tag();
+
+        return OkHttpNetworkMetrics.getInstance().getPercentile(tag instanceof String ? (String) tag : null, INetworkMetrics.Phase.FirstByte, 95d);
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (mFinished || mTaskList.isEmpty()) {
+                return;
+            }
+        }
+        attempt();
+    }
+
+    private void onAttemptFailure(@NonNull AttemptCallback callback, @NonNull IOException e) {
+        int attempts;
+
+        synchronized (this) {
+            mTaskList.remove(callback.mTask);
+            if (mFinished || !mTaskList.isEmpty()) {
+                // 对冲中的另一个尝试仍在进行
+                return;
+            }
+            if (!callback.mTask.isCanceled() && scheduleRetry()) {
+                return;
+            }
+            mFinished = true;
+            attempts = mAttempts;
+        }
+        mListener.onFailure(e, attempts);
+    }
+
+    private void onAttemptResponse(@NonNull AttemptCallback callback, @NonNull Response response) throws IOException {
+        List<OkHttpScheduler.Task> taskList;
+        int attempts;
+        boolean exhausted = false;
+
+        synchronized (this) {
+            mTaskList.remove(callback.mTask);
+            if (mFinished) {
+                response.close();
+                return;
+            }
+            if (mRetryPolicy != null && mRetryPolicy.isRetryable(response.code())) {
+                if (!mTaskList.isEmpty()) {
+                    response.close();
+                    return;
+                }
+                if (scheduleRetry()) {
+                    response.close();
+                    return;
+                }
+                exhausted = true;
+            }
+            mFinished = true;
+            attempts = mAttempts;
+            if (mFuture != null) {
+                mFuture.cancel(false);
+                mFuture = null;
+            }
+            taskList = new ArrayList<>(mTaskList);
+            mTaskList.clear();
+        }
+        for (OkHttpScheduler.Task task : taskList) {
+            task.cancel();
+        }
+        if (exhausted) {
+            response.close();
+            mListener.onFailure(new HttpStatusException(response.code(), "Unexpected code " + response.code() + " for " + mRequest.url()), attempts);
+        } else {
+            mListener.onResponse(response, attempts);
+        }
+    }
+
+    /**
+     在退避时间后安排下一次尝试，调用时需持有锁
+
+     @return 是否安排了重试
+     */
+    private boolean scheduleRetry() {
+        if (mRetryPolicy == null || !mRetryPolicy.canRetry(mIdempotent, mAttempts)) {
+            return false;
+        }
+        if (mFuture != null) {
+            mFuture.cancel(false);
+        }
+        mFuture = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                attempt();
+            }
+        }, mRetryPolicy.getDelay(mAttempts), TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    void setPriority(@NonNull RequestPriority priority) {
+        List<OkHttpScheduler.Task> taskList;
+
+        synchronized (this) {
+            mPriority = priority;
+            taskList = new ArrayList<>(mTaskList);
+        }
+        for (OkHttpScheduler.Task task : taskList) {
+            task.setPriority(priority);
+        }
+    }
+
+    void start() {
+        attempt();
+    }
+
+    interface IListener {
+        void onFailure(@NonNull IOException e, int attempts);
+
+        /**
+         收到最终的响应，在OkHttp工作线程中调用，调用方负责关闭响应
+         */
+        void onResponse(@NonNull Response response, int attempts) throws IOException;
+    }
+
+    private class AttemptCallback implements Callback {
+        private OkHttpScheduler.Task mTask;
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            onAttemptFailure(this, e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            onAttemptResponse(this, response);
+        }
+    }
+}
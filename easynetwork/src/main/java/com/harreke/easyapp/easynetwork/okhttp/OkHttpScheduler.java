@@ -0,0 +1,234 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.RequestPriority;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ 由 huoqisheng 于 2017/4/17 创建
+
+ 按优先级调度的请求队列
+
+ 请求先进入等待队列，按优先级从高到低（同优先级先进先出）交给OkHttp执行，并限制总并发数与每个主机的并发数；
+ {@link RequestPriority#Prefetch}最多只占用一半的并发数，保证用户正在等待的请求总有空闲的连接
+ */
+class OkHttpScheduler {
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    private static final int MAX_PREFETCH_REQUESTS = MAX_REQUESTS / 2;
+    private volatile static OkHttpScheduler mInstance = null;
+    private final Map<String, Integer> mHostRunningMap = new HashMap<>();
+    private final PriorityQueue<Task> mPendingQueue = new PriorityQueue<>(11, new Comparator<Task>() {
+        @Override
+        public int compare(Task task1, Task task2) {
+            int result = task1.mPriority.compareTo(task2.mPriority);
+            if (result != 0) {
+                return result;
+            }
+
+            return task1.mSequence < task2.mSequence ? -1 : (task1.mSequence == task2.mSequence ? 0 : 1);
+        }
+    });
+    private int mPrefetchRunning = 0;
+    private int mRunning = 0;
+    private long mSequence = 0L;
+
+    private OkHttpScheduler() {
+    }
+
+    static OkHttpScheduler getInstance() {
+        if (mInstance == null) {
+            synchronized (OkHttpScheduler.class) {
+                if (mInstance == null) {
+                    mInstance = new OkHttpScheduler();
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    private void finish(@NonNull Task task) {
+        synchronized (this) {
+            if (!task.mRunning) {
+                return;
+            }
+            task.mRunning = false;
+            mRunning--;
+            if (task.mPrefetch) {
+                mPrefetchRunning--;
+            }
+            int hostRunning = mHostRunningMap.get(task.mHost) - 1;
+            if (hostRunning == 0) {
+                mHostRunningMap.remove(task.mHost);
+            } else {
+                mHostRunningMap.put(task.mHost, hostRunning);
+            }
+        }
+        promote();
+    }
+
+    private int getHostRunning(@NonNull String host) {
+        Integer hostRunning = mHostRunningMap.get(host);
+
+        return hostRunning == null ? 0 : hostRunning;
+    }
+
+    /**
+     判断是否空闲，即除{@link RequestPriority#Prefetch}外没有正在执行或等待的请求
+
+     @return 是否空闲
+     */
+    synchronized boolean isIdle() {
+        Task task = mPendingQueue.peek();
+
+        return mRunning == mPrefetchRunning && (task == null || task.mPriority == RequestPriority.Prefetch);
+    }
+
+    /**
+     将可以执行的等待请求交给OkHttp
+     */
+    private void promote() {
+        List<Task> readyList = null;
+
+        synchronized (this) {
+            if (mRunning >= MAX_REQUESTS || mPendingQueue.isEmpty()) {
+                return;
+            }
+            List<Task> skippedList = null;
+            Task task;
+            while (mRunning < MAX_REQUESTS && (task = mPendingQueue.poll()) != null) {
+                boolean prefetch = task.mPriority == RequestPriority.Prefetch;
+                if (getHostRunning(task.mHost) >= MAX_REQUESTS_PER_HOST || prefetch && mPrefetchRunning >= MAX_PREFETCH_REQUESTS) {
+                    if (skippedList == null) {
+                        skippedList = new ArrayList<>();
+                    }
+                    skippedList.add(task);
+                    continue;
+                }
+                task.mRunning = true;
+                task.mPrefetch = prefetch;
+                mRunning++;
+                if (prefetch) {
+                    mPrefetchRunning++;
+                }
+                mHostRunningMap.put(task.mHost, getHostRunning(task.mHost) + 1);
+                if (readyList == null) {
+                    readyList = new ArrayList<>();
+                }
+                readyList.add(task);
+            }
+            if (skippedList != null) {
+                mPendingQueue.addAll(skippedList);
+            }
+        }
+        if (readyList != null) {
+            for (Task task : readyList) {
+                task.mCall.enqueue(task);
+            }
+        }
+    }
+
+    /**
+     将请求加入等待队列
+
+     @param call 请求
+     @param priority 优先级
+     @param callback 回调
+
+     @return 调度任务，用于取消请求或调整优先级
+     */
+    Task schedule(@NonNull Call call, @NonNull RequestPriority priority, @NonNull Callback callback) {
+        Task task = new Task(call, priority, callback);
+
+        synchronized (this) {
+            task.mSequence = mSequence++;
+            mPendingQueue.add(task);
+        }
+        promote();
+
+        return task;
+    }
+
+    class Task implements Callback {
+        private Call mCall;
+        private Callback mCallback;
+        private String mHost;
+        private boolean mPrefetch = false;
+        private RequestPriority mPriority;
+        private boolean mRunning = false;
+        private long mSequence;
+
+        private Task(@NonNull Call call, @NonNull RequestPriority priority, @NonNull Callback callback) {
+            mCall = call;
+            mPriority = priority;
+            mCallback = callback;
+            mHost = call.request().url().host();
+        }
+
+        /**
+         取消请求，尚未执行的请求直接从等待队列中移除
+         */
+        void cancel() {
+            synchronized (OkHttpScheduler.this) {
+                mPendingQueue.remove(this);
+            }
+            mCall.cancel();
+        }
+
+        boolean isCanceled() {
+            return mCall.isCanceled();
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            try {
+                mCallback.onFailure(call, e);
+            } finally {
+                finish(this);
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            // 响应体读取完成后才释放并发数
+            try {
+                mCallback.onResponse(call, response);
+            } finally {
+                finish(this);
+            }
+        }
+
+        /**
+         调整优先级，只对尚未执行的请求生效
+
+         @param priority 优先级
+         */
+        void setPriority(@NonNull RequestPriority priority) {
+            synchronized (OkHttpScheduler.this) {
+                if (mPriority == priority) {
+                    return;
+                }
+                if (mPendingQueue.remove(this)) {
+                    mPriority = priority;
+                    mPendingQueue.add(this);
+                } else {
+                    mPriority = priority;
+                }
+            }
+            promote();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ 由 huoqisheng 于 2017/4/13 创建
+
+ 多连接分段下载器
+
+ 先通过HEAD请求获取Content-Length与Accept-Ranges，再将文件切分为若干区间，由多个连接并行下载，
+ 各连接通过FileChannel按位置写入同一个预分配的临时文件；失败的区间单独重试。HEAD请求失败或服务器不支持分段时退回单连接下载。
+
+ 连接数从1开始，每增加一个连接后测量一轮吞吐量，吞吐量仍有明显提升时才继续增加，直到达到上限
+ */
+class OkHttpSegmentDownloader {
+    /**
+     区间最小字节数
+     */
+    private static final long CHUNK_SIZE_MIN = 256L * 1024L;
+    /**
+     每个连接平均分到的区间数
+     */
+    private static final int CHUNKS_PER_SEGMENT = 4;
+    /**
+     增加连接后吞吐量至少提升的比例
+     */
+    private static final double GROW_RATIO = 1.1D;
+    private static final int MAX_RETRY = 3;
+    private static final int READ_SIZE = 8192;
+    private FileChannel mChannel;
+    private Set<Call> mCallSet = new HashSet<>();
+    private LinkedList<Chunk> mChunkList = new LinkedList<>();
+    private int mConnections = 0;
+    private boolean mFinished = false;
+    private boolean mGrowing = true;
+    private File mFile;
+    private IListener mListener;
+    private int mMaxConnections;
+    private long mProgress = 0L;
+    private RandomAccessFile mRandomAccessFile;
+    private long mReportedPercent = -1L;
+    private Request mRequest;
+    private int mRemainingChunks;
+    private File mTempFile;
+    private long mTotal;
+    private double mWindowRate = 0D;
+    private long mWindowStartBytes;
+    private int mWindowChunks;
+    private long mWindowStartTime;
+
+    OkHttpSegmentDownloader(@NonNull Request request, @NonNull File file, @NonNull File tempFile, int maxConnections, @NonNull IListener listener) {
+        mRequest = request;
+        mFile = file;
+        mTempFile = tempFile;
+        mMaxConnections = maxConnections;
+        mListener = listener;
+    }
+
+    synchronized void cancel() {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        for (Call call : mCallSet) {
+            call.cancel();
+        }
+        mCallSet.clear();
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        try {
+            if (mChannel != null) {
+                mChannel.close();
+            }
+            if (mRandomAccessFile != null) {
+                mRandomAccessFile.close();
+            }
+        } catch (IOException ignored) {
+        }
+        mChannel = null;
+        mRandomAccessFile = null;
+    }
+
+    private void download(@NonNull Chunk chunk) {
+        Call call;
+
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            chunk.written = 0L;
+            call = OkHttpClientHelper.getInstance()
+                    .newCall(mRequest.newBuilder().header("Range", "bytes=" + chunk.start + "-" + (chunk.end - 1L)).build());
+            mCallSet.add(call);
+        }
+        call.enqueue(new ChunkCallback(chunk));
+    }
+
+    /**
+     结束下载并回调失败；监听器在锁外回调，监听器可能直接分发结果并获取执行器的锁，而执行器取消时持有自身的锁再获取下载器的锁
+
+     @param cause 失败的原因
+     @param attempts 失败的区间已尝试的次数
+     */
+    private void fail(@Nullable Throwable cause, int attempts) {
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            cancel();
+        }
+        FileUtil.deleteFile(mTempFile);
+        mListener.onFailure(cause, attempts);
+    }
+
+    /**
+     结束下载并退回单连接下载，同样在锁外回调
+     */
+    private void fallback() {
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+        }
+        mListener.onUnsupported();
+    }
+
+    private boolean isRangeSupported(@NonNull Response response) {
+        return response.isSuccessful() && "bytes".equalsIgnoreCase(response.header("Accept-Ranges")) && mTotal > CHUNK_SIZE_MIN * 2L;
+    }
+
+    private void onChunkFailure(@NonNull Call call, @NonNull Chunk chunk, @NonNull IOException e) {
+        synchronized (this) {
+            mCallSet.remove(call);
+            if (mFinished) {
+                return;
+            }
+            // 丢弃该区间已写入的进度，整个区间重新下载
+            mProgress -= chunk.written;
+            chunk.retry++;
+        }
+        if (chunk.retry <= MAX_RETRY) {
+            download(chunk);
+        } else {
+            fail(e, chunk.retry);
+        }
+    }
+
+    private void onChunkSuccess(@NonNull Call call) {
+        Chunk next;
+        Chunk extra = null;
+        boolean finished;
+        boolean success = false;
+
+        synchronized (this) {
+            mCallSet.remove(call);
+            if (mFinished) {
+                return;
+            }
+            mRemainingChunks--;
+            finished = mRemainingChunks == 0;
+            if (finished) {
+                mFinished = true;
+                closeChannel();
+                success = mTempFile.renameTo(mFile);
+                next = null;
+            } else {
+                next = mChunkList.poll();
+                if (next == null) {
+                    mConnections--;
+                } else if (shouldGrow()) {
+                    extra = mChunkList.poll();
+                    if (extra != null) {
+                        mConnections++;
+                    }
+                }
+            }
+        }
+        if (next != null) {
+            download(next);
+            if (extra != null) {
+                download(extra);
+            }
+        } else if (finished) {
+            if (success) {
+                mListener.onSuccess();
+            } else {
+                FileUtil.deleteFile(mTempFile);
+                mListener.onFailure(new IOException("Cannot rename " + mTempFile.getAbsolutePath() + " to " + mFile.getAbsolutePath()), 1);
+            }
+        }
+    }
+
+    private void onProbe(@NonNull Response response) {
+        mTotal = response.body().contentLength();
+        response.close();
+        if (!isRangeSupported(response)) {
+            fallback();
+            return;
+        }
+        long chunkSize = Math.max(CHUNK_SIZE_MIN, mTotal / (mMaxConnections * CHUNKS_PER_SEGMENT));
+        Chunk first = null;
+        IOException cause = null;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            try {
+                mRandomAccessFile = new RandomAccessFile(mTempFile, "rw");
+                mRandomAccessFile.setLength(mTotal);
+                mChannel = mRandomAccessFile.getChannel();
+            } catch (IOException e) {
+                // 在锁外回调失败
+                cause = e;
+                closeChannel();
+            }
+            if (mChannel != null) {
+                for (long start = 0L; start < mTotal; start += chunkSize) {
+                    mChunkList.add(new Chunk(start, Math.min(start + chunkSize, mTotal)));
+                }
+                mRemainingChunks = mChunkList.size();
+                mConnections = 1;
+                mWindowStartTime = SystemClock.elapsedRealtime();
+                mWindowStartBytes = 0L;
+                mWindowChunks = 0;
+                first = mChunkList.poll();
+            }
+        }
+        if (first == null) {
+            fail(cause, 1);
+            return;
+        }
+        download(first);
+    }
+
+    private void reportProgress(long read) {
+        long progress;
+        boolean report = false;
+
+        synchronized (this) {
+            mProgress += read;
+            progress = mProgress;
+            long percent = progress * 100L / mTotal;
+            if (percent != mReportedPercent) {
+                mReportedPercent = percent;
+                report = true;
+            }
+        }
+        if (report) {
+            mListener.onProgress(progress, mTotal);
+        }
+    }
+
+    /**
+     每完成与当前连接数相同数量的区间后测量一次吞吐量，决定是否再增加一个连接
+     */
+    private boolean shouldGrow() {
+        if (!mGrowing || mConnections >= mMaxConnections) {
+            return false;
+        }
+        mWindowChunks++;
+        if (mWindowChunks < mConnections) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtime();
+        double rate = (mProgress - mWindowStartBytes) / (double) Math.max(1L, now - mWindowStartTime);
+        mWindowStartTime = now;
+        mWindowStartBytes = mProgress;
+        mWindowChunks = 0;
+        if (mWindowRate > 0D && rate < mWindowRate * GROW_RATIO) {
+            mGrowing = false;
+            return false;
+        }
+        mWindowRate = rate;
+
+        return true;
+    }
+
+    void start() {
+        Call call;
+
+        synchronized (this) {
+            call = OkHttpClientHelper.getInstance().newCall(mRequest.newBuilder().head().build());
+            mCallSet.add(call);
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                synchronized (OkHttpSegmentDownloader.this) {
+                    mCallSet.remove(call);
+                }
+                // HEAD请求可能被代理或服务器拒绝，单连接下载仍可能成功
+                fallback();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                synchronized (OkHttpSegmentDownloader.this) {
+                    mCallSet.remove(call);
+                }
+                onProbe(response);
+            }
+        });
+    }
+
+    private void write(@NonNull Chunk chunk, @NonNull Response response) throws IOException {
+        if (response.code() != 206 || response.body().contentLength() != chunk.end - chunk.start) {
+            throw new IOException("Unexpected response for range " + chunk.start + "-" + chunk.end);
+        }
+        BufferedSource source = response.body().source();
+        byte[] buffer = new byte[READ_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            FileChannel channel;
+            synchronized (this) {
+                channel = mChannel;
+            }
+            if (channel == null) {
+                throw new IOException("Canceled");
+            }
+            byteBuffer.clear();
+            byteBuffer.limit(read);
+            long position = chunk.start + chunk.written;
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+            chunk.written += read;
+            reportProgress(read);
+        }
+        if (chunk.written != chunk.end - chunk.start) {
+            throw new IOException("Incomplete range " + chunk.start + "-" + chunk.end);
+        }
+    }
+
+    interface IListener {
+        /**
+         下载失败
+
+         @param cause 失败的原因，重命名临时文件失败等情况下为生成的IOException
+         @param attempts 失败的区间已尝试的次数
+         */
+        void onFailure(@Nullable Throwable cause, int attempts);
+
+        void onProgress(long progress, long total);
+
+        void onSuccess();
+
+        /**
+         服务器不支持分段下载，需要退回单连接下载
+         */
+        void onUnsupported();
+    }
+
+    private static class Chunk {
+        private final long end;
+        private int retry = 0;
+        private final long start;
+        private long written = 0L;
+
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private class ChunkCallback implements Callback {
+        private Chunk mChunk;
+
+        private ChunkCallback(@NonNull Chunk chunk) {
+            mChunk = chunk;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            onChunkFailure(call, mChunk, e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            try {
+                write(mChunk, response);
+            } catch (IOException e) {
+                onChunkFailure(call, mChunk, e);
+                return;
+            } finally {
+                response.close();
+            }
+            onChunkSuccess(call);
+        }
+    }
+}
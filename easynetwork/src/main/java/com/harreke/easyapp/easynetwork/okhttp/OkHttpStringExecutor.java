@@ -1,80 +1,76 @@
 package com.harreke.easyapp.easynetwork.okhttp;
 
+import android.content.ContentResolver;
 import android.content.Context;
-import android.os.Handler;
-import android.os.Message;
 import android.support.annotation.NonNull;
 
 import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IRequestUpdateCallback;
 import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RetryPolicy;
+import com.harreke.easyapp.network.UploadPart;
 import com.harreke.easyapp.network.executor.StringExecutor;
-import com.harreke.easyapp.network.UploadPair;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.FormBody;
 import okhttp3.Headers;
-import okhttp3.MediaType;
 import okhttp3.MultipartBody;
+import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
 
 /**
  由huoqisheng于2016/7/4创建
+
+ 上传文件时请求体为multipart表单，每个文件部分由{@link OkHttpUploadPartBody}逐段读取写出；
+ 整个请求体的写出进度通过{@link #PROGRESS}分发，每个文件部分的进度通过{@link #PART_PROGRESS}加上部分的序号分发。
+ 开启{@link #staleWhileRevalidate(boolean)}时，成功响应（2xx）的响应体保存在{@link OkHttpBodyStore}中，执行时读取到的旧结果通过{@link #CACHED}分发；
+ 保存的是变换前的响应体，旧结果在读取后同样经过结果变换
  */
 public class OkHttpStringExecutor extends StringExecutor {
+    private static final int CACHED = -2;
     private static final int FAILURE = -1;
+    /**
+     文件部分进度消息的起始值，消息类型减去此值即为部分的序号
+     */
+    private static final int PART_PROGRESS = 2;
+    private static final int PROGRESS = 1;
     private static final int SUCCESS = 0;
-    private Call mCall;
-    private Handler mHandler = new Handler(new Handler.Callback() {
-        @Override
-        public boolean handleMessage(Message message) {
-            IRequestCallback<String> requestCallback = getRequestCallback();
-            if (requestCallback == null) {
-                destroy();
-                return false;
-            }
-            if (message.what == SUCCESS) {
-                requestCallback.onSuccess((String) message.obj);
-            } else {
-                requestCallback.onFailure();
-            }
-            destroy();
-            return true;
-        }
-    });
-    private Callback mCallback = new Callback() {
+    private static final IResponseReader<Body> READER = new IResponseReader<Body>() {
         @Override
-        public void onFailure(Call call, IOException e) {
-            Message message = mHandler.obtainMessage();
-            message.what = FAILURE;
-            message.sendToTarget();
-        }
-
-        @Override
-        public void onResponse(Call call, Response response) throws IOException {
-            Message message = mHandler.obtainMessage();
-            message.what = SUCCESS;
-            message.obj = response.body().string();
-            message.sendToTarget();
-            response.body().close();
+        public Body read(@NonNull Response response) throws IOException {
+            return new Body(response.body().string(), response.isSuccessful());
         }
     };
+    private OkHttpCallCoalescer.Subscription<Body> mSubscription;
+    /**
+     当前执行的分发目标，每次执行时重新创建
+     */
+    private Target mTarget = null;
 
     @Override
-    public void cancel() {
-        if (mCall != null) {
-            mCall.cancel();
-            mCall = null;
+    public synchronized void cancel() {
+        if (mSubscription != null) {
+            mSubscription.cancel();
+            mSubscription = null;
+        }
+        if (mTarget != null) {
+            OkHttpDelivery.getInstance().remove(mTarget);
+            mTarget.mProgressReporter.disable();
+            for (OkHttpProgressReporter partReporter : mTarget.mPartReporterList) {
+                partReporter.disable();
+            }
+            mTarget = null;
         }
     }
 
     @Override
-    public void execute(@NonNull Context context) {
+    public synchronized void execute(@NonNull Context context) {
         cancel();
         RequestBuilder requestBuilder = getRequestBuilder();
         if (requestBuilder == null) {
@@ -84,58 +80,211 @@ public class OkHttpStringExecutor extends StringExecutor {
         if (requestUrl == null) {
             return;
         }
-        Headers headers = getHeaders(requestBuilder);
-        RequestBody requestBody = getRequestBody(requestBuilder);
-        mCall = OkHttpClientHelper.getInstance().call(requestUrl, headers, requestBody);
-        mCall.enqueue(mCallback);
-
+        Target target = new Target();
+        mTarget = target;
+        Headers headers = OkHttpClientHelper.getHeaders(requestBuilder);
+        RequestBody requestBody = getRequestBody(target, context.getContentResolver(), requestBuilder);
+        RetryPolicy retryPolicy = getRetryPolicy();
+        if (requestBody != null && !getUploadPartList().isEmpty()) {
+            // 上传时报告请求体的写出进度，不再报告响应的读取进度
+            requestBody = new OkHttpProgressRequestBody(requestBody, target.mProgressReporter);
+        }
+        Request request = OkHttpClientHelper.getInstance().newRequest(requestBuilder.getTag(), requestUrl, headers, requestBody, requestBuilder.getCachePolicy());
+        for (UploadPart uploadPart : getUploadPartList()) {
+            if (!uploadPart.isRepeatable()) {
+                // 输入流已被读取，无法重试
+                retryPolicy = null;
+            }
+        }
+        String key = getUploadPartList().isEmpty() ? OkHttpCallCoalescer.getKey("String", requestBuilder) : null;
+        if (key != null && isStaleWhileRevalidate()) {
+            readStale(target, key);
+        }
+        mSubscription = OkHttpCallCoalescer.getInstance().subscribe(key, request, getPriority(), retryPolicy, READER, target);
     }
 
-    private Headers getHeaders(RequestBuilder requestBuilder) {
-        if (!requestBuilder.hasHeader()) {
-            return null;
+    private RequestBody getRequestBody(@NonNull Target target, @NonNull ContentResolver contentResolver, @NonNull RequestBuilder requestBuilder) {
+        List<UploadPart> uploadPartList = getUploadPartList();
+        if (uploadPartList.isEmpty()) {
+            return OkHttpClientHelper.getFormBody(requestBuilder);
+        }
+        MultipartBody.Builder builder = new MultipartBody.Builder();
+        builder.setType(MultipartBody.FORM);
+        for (Map.Entry<String, String> body : requestBuilder.getBody().entrySet()) {
+            builder.addFormDataPart(body.getKey(), body.getValue());
         }
-        Headers.Builder builder = new Headers.Builder();
-        Map<String, String> headerMap = requestBuilder.getHeader();
-        for (Map.Entry<String, String> header : headerMap.entrySet()) {
-            builder.add(header.getKey(), header.getValue());
+        for (int i = 0; i < uploadPartList.size(); i++) {
+            UploadPart uploadPart = uploadPartList.get(i);
+            OkHttpProgressReporter partReporter = new OkHttpProgressReporter(target, PART_PROGRESS + i);
+            target.mPartReporterList.add(partReporter);
+            builder.addFormDataPart(uploadPart.getName(), uploadPart.getFileName(), new OkHttpUploadPartBody(contentResolver, uploadPart, partReporter));
         }
+
         return builder.build();
     }
 
-    private RequestBody getRequestBody(RequestBuilder requestBuilder) {
-        UploadPair uploadPair = getUploadPair();
-        if (uploadPair == null && !requestBuilder.hasBody()) {
-            return null;
-        }
-        if (uploadPair != null && !requestBuilder.hasBody()) {
-            MultipartBody.Builder builder = new MultipartBody.Builder();
-            builder.setType(MultipartBody.FORM);
-            return builder.addFormDataPart(uploadPair.name,
-                    uploadPair.file.getName(),
-                    RequestBody.create(MediaType.parse(uploadPair.contentType), uploadPair.file)).build();
-        } else if (uploadPair != null && requestBuilder.hasBody()) {
-            Map<String, String> bodyMap = requestBuilder.getBody();
-            MultipartBody.Builder builder = new MultipartBody.Builder();
-            builder.setType(MultipartBody.FORM);
-            for (Map.Entry<String, String> body : bodyMap.entrySet()) {
-                builder.addFormDataPart(body.getKey(), body.getValue());
-            }
-            builder.addFormDataPart(uploadPair.name, uploadPair.file.getName(), RequestBody.create(MediaType.parse(uploadPair.contentType), uploadPair.file));
-
-            return builder.build();
-        } else {
-            FormBody.Builder builder = new FormBody.Builder();
-            Map<String, String> bodyMap = requestBuilder.getBody();
-            for (Map.Entry<String, String> body : bodyMap.entrySet()) {
-                builder.add(body.getKey(), body.getValue());
+    @Override
+    public boolean isExecuting() {
+        return mSubscription != null && mSubscription.isActive();
+    }
+
+    @Override
+    protected void onPriorityChanged() {
+        if (mSubscription != null) {
+            mSubscription.setPriority(getPriority());
+        }
+    }
+
+    /**
+     在后台读取保存的旧结果，同时记录键以便保存新结果
+     */
+    private void readStale(@NonNull final Target target, @NonNull final String key) {
+        target.mStoreKey = key;
+        OkHttpBodyStore.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                Object stale;
+
+                try {
+                    stale = transformResult(OkHttpBodyStore.getInstance().get(key));
+                } catch (Exception e) {
+                    // 旧结果无法使用时只等待网络结果
+                    return;
+                }
+                if (stale != null) {
+                    target.mStale = stale;
+                    OkHttpDelivery.getInstance().post(target, CACHED);
+                }
             }
-            return builder.build();
+        });
+    }
+
+    /**
+     读取到的响应体及响应是否成功
+     */
+    private static class Body {
+        private String mString;
+        private boolean mSuccessful;
+
+        private Body(String string, boolean successful) {
+            mString = string;
+            mSuccessful = successful;
         }
     }
 
-    @Override
-    public boolean isExecuting() {
-        return mCall != null && !mCall.isCanceled();
+    /**
+     一次执行的分发目标与订阅者，保存该次执行的结果；只有仍是当前目标时才分发，取消后旧目标发出的消息被忽略
+     */
+    private class Target implements OkHttpDelivery.ITarget, ICallSubscriber<Body> {
+        private volatile int mAttempts = 0;
+        private volatile Throwable mCause = null;
+        /**
+         已通过onSuccess返回的旧结果，没有时为null，只在分发时读写
+         */
+        private Object mDeliveredStale = null;
+        private final List<OkHttpProgressReporter> mPartReporterList = new ArrayList<>();
+        private OkHttpProgressReporter mProgressReporter = new OkHttpProgressReporter(this, PROGRESS);
+        /**
+         变换后的结果
+         */
+        private volatile Object mResult = null;
+        private volatile Object mStale = null;
+        /**
+         保存响应体的键，未开启staleWhileRevalidate时为null
+         */
+        private volatile String mStoreKey = null;
+
+        @Override
+        public Executor getExecutor() {
+            return OkHttpDelivery.getExecutor(getDeliveryPolicy(), getDeliveryExecutor());
+        }
+
+        @Override
+        public String getTag() {
+            RequestBuilder requestBuilder = getRequestBuilder();
+
+            return requestBuilder == null ? null : requestBuilder.getTag();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onDeliver(int what) {
+            // 不在主线程分发时，与取消以及同一执行的其他消息互斥
+            synchronized (OkHttpStringExecutor.this) {
+                if (mTarget != this) {
+                    return;
+                }
+                if (what == PROGRESS) {
+                    mProgressReporter.deliver(getProgressCallback());
+                    return;
+                }
+                if (what >= PART_PROGRESS) {
+                    int index = what - PART_PROGRESS;
+
+                    if (index < mPartReporterList.size()) {
+                        mPartReporterList.get(index).deliver(getProgressCallback(), index);
+                    }
+                    return;
+                }
+                IRequestCallback<?> requestCallback = getResultCallback();
+                if (what == CACHED) {
+                    if (requestCallback != null) {
+                        mDeliveredStale = mStale;
+                        notifySuccess(requestCallback, mDeliveredStale);
+                    }
+                    return;
+                }
+                if (requestCallback != null) {
+                    if (what == SUCCESS) {
+                        if (mDeliveredStale == null) {
+                            notifySuccess(requestCallback, mResult);
+                        } else if (!mDeliveredStale.equals(mResult) && requestCallback instanceof IRequestUpdateCallback) {
+                            // 普通回调只收到一次onSuccess，不会因刷新再次回调
+                            ((IRequestUpdateCallback<Object>) requestCallback).onUpdated(mResult);
+                        }
+                    } else if (mDeliveredStale == null) {
+                        // 已返回旧结果时不再报告失败
+                        notifyFailure(requestCallback, mCause, mAttempts);
+                    }
+                }
+                destroy();
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Throwable cause, int attempts) {
+            mCause = cause;
+            mAttempts = attempts;
+            OkHttpDelivery.getInstance().post(this, FAILURE);
+        }
+
+        @Override
+        public void onProgress(long progress, long total) {
+            if (mPartReporterList.isEmpty()) {
+                mProgressReporter.onProgress(progress, total);
+            }
+        }
+
+        @Override
+        public void onSuccess(final Body result, int attempts) {
+            final String storeKey = mStoreKey;
+
+            if (storeKey != null && result.mSuccessful && result.mString != null) {
+                // 只保存成功的响应，错误页不会成为之后返回的旧结果
+                OkHttpBodyStore.getInstance().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        OkHttpBodyStore.getInstance().put(storeKey, result.mString);
+                    }
+                });
+            }
+            try {
+                mResult = transformResult(result.mString);
+            } catch (Exception e) {
+                onFailure(e, attempts);
+                return;
+            }
+            OkHttpDelivery.getInstance().post(this, SUCCESS);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.harreke.easyapp.easynetwork.okhttp;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.IProgressCallback;
+import com.harreke.easyapp.network.UploadPart;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ 由 huoqisheng 于 2017/4/26 创建
+
+ 文件部分的请求体
+
+ 每次从文件、输入流或Uri读取固定大小的一段并立即写出，内存占用与文件大小无关，同时报告该部分的写出进度
+ */
+class OkHttpUploadPartBody extends RequestBody {
+    /**
+     每次读取的最大字节数
+     */
+    private static final long READ_SIZE = 8192L;
+    private long mContentLength = -2L;
+    private ContentResolver mContentResolver;
+    private IProgressCallback mProgressCallback;
+    private UploadPart mUploadPart;
+
+    OkHttpUploadPartBody(@NonNull ContentResolver contentResolver, @NonNull UploadPart uploadPart, @NonNull IProgressCallback progressCallback) {
+        mContentResolver = contentResolver;
+        mUploadPart = uploadPart;
+        mProgressCallback = progressCallback;
+    }
+
+    @Override
+    public long contentLength() {
+        AssetFileDescriptor descriptor;
+
+        // MultipartBody计算长度与写出时都会调用，只获取一次
+        if (mContentLength == -2L) {
+            if (mUploadPart.getFile() != null) {
+                mContentLength = mUploadPart.getFile().length();
+            } else if (mUploadPart.getUri() != null) {
+                mContentLength = -1L;
+                try {
+                    descriptor = mContentResolver.openAssetFileDescriptor(mUploadPart.getUri(), "r");
+                    if (descriptor != null) {
+                        mContentLength = descriptor.getLength();
+                        descriptor.close();
+                    }
+                } catch (IOException | RuntimeException ignored) {
+                }
+            } else {
+                mContentLength = mUploadPart.getContentLength();
+            }
+        }
+
+        return mContentLength;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return MediaType.parse(mUploadPart.getContentType());
+    }
+
+    private Source open() throws IOException {
+        InputStream inputStream;
+
+        if (mUploadPart.getFile() != null) {
+            return Okio.source(mUploadPart.getFile());
+        }
+        if (mUploadPart.getUri() != null) {
+            inputStream = mContentResolver.openInputStream(mUploadPart.getUri());
+            if (inputStream == null) {
+                throw new FileNotFoundException(String.valueOf(mUploadPart.getUri()));
+            }
+
+            return Okio.source(inputStream);
+        }
+
+        return Okio.source(mUploadPart.getInputStream());
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        long total = contentLength();
+        long progress = 0L;
+        long read;
+        Source source = open();
+
+        try {
+            while ((read = source.read(sink.buffer(), READ_SIZE)) != -1L) {
+                // 只保留不完整的数据段，完整的数据段立即写出
+                sink.emitCompleteSegments();
+                progress += read;
+                mProgressCallback.onProgress(progress, total);
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
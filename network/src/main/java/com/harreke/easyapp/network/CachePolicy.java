@@ -0,0 +1,25 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/5 创建
+
+ Http请求的缓存策略
+ */
+public enum CachePolicy {
+    /**
+     遵循服务器返回的Cache-Control/ETag/Last-Modified，缓存过期时自动发起条件请求
+     */
+    Default,
+    /**
+     总是请求网络，忽略本地缓存（响应仍会写入缓存）
+     */
+    NetworkOnly,
+    /**
+     优先使用本地缓存（即使已过期），没有缓存时才请求网络
+     */
+    CacheFirst,
+    /**
+     只使用本地缓存，没有缓存时直接失败
+     */
+    ForceCache
+}
@@ -0,0 +1,472 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.common.interf.IDestroyable;
+import com.harreke.easyapp.common.singleton.CommonHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ 由 huoqisheng 于 2017/4/27 创建
+
+ 可续传的分块上传器
+
+ 文件按固定大小分块，多个分块同时上传，每个分块在读取时逐段计算校验值；服务器确认的分块会立即追加记录到状态文件中，
+ 上传中断（取消、网络断开或应用被关闭）后以相同的文件与状态文件再次执行，只会上传未确认的分块，全部确认后发送完成请求。
+ 文件的长度或修改时间改变时状态文件失效，重新开始上传。结果与进度在主线程中回调
+ */
+public class ChunkUploader implements IDestroyable {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     每次从文件读取的最大字节数
+     */
+    private static final int READ_SIZE = 8192;
+    private IRequestCallback<String> mCallback = null;
+    private int mChunkSize = 1024 * 1024;
+    private Thread mCoordinator = null;
+    /**
+     当前上传中放弃的分块已尝试的次数，用于回调失败
+     */
+    private volatile int mFailedAttempts = 1;
+    private File mFile;
+    private int mParallelism = 3;
+    private IProgressCallback mProgressCallback = null;
+    private IChunkUploadProtocol mProtocol;
+    private RetryPolicy mRetryPolicy = new RetryPolicy();
+    private File mStateFile;
+    /**
+     当前上传的标识，取消或重新执行后旧的上传不再回调
+     */
+    private volatile Object mToken = null;
+    private long mUploaded = 0L;
+
+    /**
+     @param file 上传的文件
+     @param stateFile 状态文件，用于记录已确认的分块
+     @param protocol 上传协议
+     */
+    public ChunkUploader(@NonNull File file, @NonNull File stateFile, @NonNull IChunkUploadProtocol protocol) {
+        mFile = file;
+        mStateFile = stateFile;
+        mProtocol = protocol;
+    }
+
+    private static String toHex(@NonNull byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     设置结果回调，在主线程中执行，结果为{@link IChunkUploadProtocol#commit}的返回值
+
+     @param callback 回调，为{@link IRequestErrorCallback}时同时返回失败原因
+
+     @return 自身
+     */
+    public ChunkUploader callback(@NonNull IRequestCallback<String> callback) {
+        mCallback = callback;
+
+        return this;
+    }
+
+    /**
+     取消上传，已确认的分块会保留在状态文件中
+     */
+    public void cancel() {
+        mToken = null;
+        if (mCoordinator != null) {
+            mCoordinator.interrupt();
+            mCoordinator = null;
+        }
+    }
+
+    /**
+     设置分块大小，续传时使用状态文件中记录的分块大小
+
+     @param chunkSize 分块大小（字节）
+
+     @return 自身
+     */
+    public ChunkUploader chunkSize(int chunkSize) {
+        mChunkSize = Math.max(1, chunkSize);
+
+        return this;
+    }
+
+    @Override
+    public void destroy() {
+        cancel();
+        mCallback = null;
+        mProgressCallback = null;
+    }
+
+    private void deliverFailure(@NonNull final Object token, @Nullable final Throwable cause, final int attempts) {
+        CommonHandler.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                IRequestCallback<String> callback = mCallback;
+
+                if (mToken != token) {
+                    return;
+                }
+                mToken = null;
+                mCoordinator = null;
+                if (callback == null) {
+                    return;
+                }
+                if (callback instanceof IRequestErrorCallback) {
+                    ((IRequestErrorCallback<String>) callback).onFailure(cause, attempts);
+                } else {
+                    callback.onFailure();
+                }
+            }
+        });
+    }
+
+    private void deliverProgress(@NonNull final Object token, final long progress, final long total) {
+        CommonHandler.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                if (mToken == token && mProgressCallback != null) {
+                    mProgressCallback.onProgress(progress, total);
+                }
+            }
+        });
+    }
+
+    private void deliverSuccess(@NonNull final Object token, final String result) {
+        CommonHandler.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                if (mToken != token) {
+                    return;
+                }
+                mToken = null;
+                mCoordinator = null;
+                if (mCallback != null) {
+                    mCallback.onSuccess(result);
+                }
+            }
+        });
+    }
+
+    /**
+     开始或继续上传，在主线程中调用
+     */
+    public void execute() {
+        final Object token = new Object();
+
+        cancel();
+        mToken = token;
+        mFailedAttempts = 1;
+        mCoordinator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deliverSuccess(token, upload(token));
+                } catch (IOException | RuntimeException e) {
+                    deliverFailure(token, e, mFailedAttempts);
+                }
+            }
+        }, "ChunkUploader");
+        mCoordinator.setDaemon(true);
+        mCoordinator.start();
+    }
+
+    public boolean isExecuting() {
+        return mCoordinator != null;
+    }
+
+    /**
+     设置同时上传的分块数，内存占用约为分块大小乘以此值
+
+     @param parallelism 同时上传的分块数
+
+     @return 自身
+     */
+    public ChunkUploader parallelism(int parallelism) {
+        mParallelism = Math.max(1, parallelism);
+
+        return this;
+    }
+
+    public ChunkUploader progressCallback(@NonNull IProgressCallback progressCallback) {
+        mProgressCallback = progressCallback;
+
+        return this;
+    }
+
+    /**
+     读取状态文件
+
+     第一行为会话标识，第二行为文件长度、修改时间与分块大小，之后每行为一个已确认的分块的序号与校验值；
+     写入中断时最后一行可能不完整，直接忽略
+
+     @return 状态，状态文件不存在或已失效时为null
+     */
+    private State readState(@NonNull Object token, long length, long lastModified) {
+        BufferedReader reader = null;
+        State state = null;
+        String line;
+
+        if (!mStateFile.isFile()) {
+            return null;
+        }
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(mStateFile), CHARSET));
+            String session = reader.readLine();
+            String[] header = String.valueOf(reader.readLine()).split(" ");
+            if (session == null || session.length() == 0 || header.length != 3 || Long.parseLong(header[0]) != length ||
+                    Long.parseLong(header[1]) != lastModified) {
+                return null;
+            }
+            state = new State(token, session, Integer.parseInt(header[2]), length);
+            while ((line = reader.readLine()) != null) {
+                String[] chunk = line.split(" ");
+                if (chunk.length == 2 && chunk[1].length() == 32) {
+                    int index = Integer.parseInt(chunk[0]);
+                    if (index >= 0 && index < state.mChecksums.length) {
+                        state.mChecksums[index] = chunk[1];
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     设置单个分块的重试策略，分块上传视为幂等请求；服务器返回的状态码按{@link RetryPolicy#isRetryable(int)}判断是否重试
+
+     @param retryPolicy 重试策略
+
+     @return 自身
+     */
+    public ChunkUploader retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+
+        return this;
+    }
+
+    /**
+     在工作线程中执行整个上传过程
+
+     @return 完成请求的结果
+     */
+    private String upload(@NonNull Object token) throws IOException {
+        long length = mFile.length();
+        long lastModified = mFile.lastModified();
+        List<Future<?>> futureList = new ArrayList<>();
+        ExecutorService executor;
+
+        if (!mFile.isFile()) {
+            throw new IOException("Cannot read " + mFile.getAbsolutePath());
+        }
+        State state = readState(token, length, lastModified);
+        if (state == null) {
+            state = new State(token, mProtocol.open(mFile.getName(), length, mChunkSize), mChunkSize, length);
+            writeState(state.mSession + "\n" + length + " " + lastModified + " " + state.mChunkSize + "\n", false);
+        }
+        mUploaded = 0L;
+        for (int i = 0; i < state.mChecksums.length; i++) {
+            if (state.mChecksums[i] != null) {
+                mUploaded += state.getChunkLength(i);
+            }
+        }
+        deliverProgress(token, mUploaded, length);
+        executor = Executors.newFixedThreadPool(mParallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "ChunkUploader-Chunk");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (int i = 0; i < state.mChecksums.length; i++) {
+                if (state.mChecksums[i] == null) {
+                    futureList.add(executor.submit(new ChunkTask(state, i)));
+                }
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Upload canceled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (mToken != token) {
+            throw new InterruptedIOException("Upload canceled");
+        }
+        String result = mProtocol.commit(state.mSession, Arrays.asList(state.mChecksums));
+        if (!mStateFile.delete()) {
+            mStateFile.deleteOnExit();
+        }
+
+        return result;
+    }
+
+    /**
+     读取分块并计算校验值后上传，失败时按重试策略重试
+     */
+    private void uploadChunk(@NonNull State state, int index) throws IOException {
+        int chunkLength = state.getChunkLength(index);
+        long offset = (long) index * state.mChunkSize;
+        byte[] data = new byte[chunkLength];
+        MessageDigest digest;
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        int attempts = 0;
+
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            file.close();
+            throw new IOException(e);
+        }
+        try {
+            file.seek(offset);
+            int position = 0;
+            while (position < chunkLength) {
+                int read = file.read(data, position, Math.min(READ_SIZE, chunkLength - position));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + mFile.getAbsolutePath());
+                }
+                // 逐段更新校验值，读取完成时校验值也已算好
+                digest.update(data, position, read);
+                position += read;
+            }
+        } finally {
+            file.close();
+        }
+        String checksum = toHex(digest.digest());
+        while (true) {
+            if (mToken != state.mToken) {
+                throw new InterruptedIOException("Upload canceled");
+            }
+            attempts++;
+            try {
+                mProtocol.upload(state.mSession, index, offset, data, chunkLength, checksum);
+                break;
+            } catch (IOException e) {
+                // 网络错误总是可以重试，服务器的错误状态码只有408、429与5xx等才重试
+                boolean retryable = !(e instanceof HttpStatusException) || mRetryPolicy.isRetryable(((HttpStatusException) e).getCode());
+                if (!retryable || !mRetryPolicy.canRetry(true, attempts)) {
+                    if (mToken == state.mToken) {
+                        mFailedAttempts = attempts;
+                    }
+                    throw e;
+                }
+                try {
+                    Thread.sleep(mRetryPolicy.getDelay(attempts));
+                } catch (InterruptedException interrupted) {
+                    throw new InterruptedIOException("Upload canceled");
+                }
+            }
+        }
+        synchronized (this) {
+            state.mChecksums[index] = checksum;
+            writeState(index + " " + checksum + "\n", true);
+            mUploaded += chunkLength;
+            deliverProgress(state.mToken, mUploaded, state.mLength);
+        }
+    }
+
+    /**
+     写入状态文件并同步到磁盘
+     */
+    private void writeState(@NonNull String content, boolean append) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(mStateFile, append);
+
+        try {
+            outputStream.write(content.getBytes(CHARSET));
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     上传状态
+     */
+    private static class State {
+        /**
+         各分块的校验值，未确认的分块为null
+         */
+        private String[] mChecksums;
+        private int mChunkSize;
+        private long mLength;
+        private String mSession;
+        private Object mToken;
+
+        private State(@NonNull Object token, @NonNull String session, int chunkSize, long length) {
+            mToken = token;
+            mSession = session;
+            mChunkSize = chunkSize;
+            mLength = length;
+            mChecksums = new String[Math.max(1, (int) ((length + chunkSize - 1L) / chunkSize))];
+        }
+
+        private int getChunkLength(int index) {
+            return (int) Math.min(mChunkSize, mLength - (long) index * mChunkSize);
+        }
+    }
+
+    private class ChunkTask implements Callable<Void> {
+        private int mIndex;
+        private State mState;
+
+        private ChunkTask(@NonNull State state, int index) {
+            mState = state;
+            mIndex = index;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            uploadChunk(mState, mIndex);
+
+            return null;
+        }
+    }
+}
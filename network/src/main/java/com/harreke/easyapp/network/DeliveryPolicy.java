@@ -0,0 +1,24 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/30 创建
+
+ 请求结果的分发线程
+
+ 不在主线程回调时，同一执行器的回调依次进行，不会并发，也不会与该执行器的取消同时进行；
+ 回调期间持有执行器的锁，因此回调中不应长时间阻塞
+ */
+public enum DeliveryPolicy {
+    /**
+     在主线程中回调，默认值
+     */
+    Main,
+    /**
+     在完成请求的工作线程中直接回调，回调中不能操作界面
+     */
+    Worker,
+    /**
+     交给{@link com.harreke.easyapp.network.executor.RequestExecutor#deliverOn(java.util.concurrent.Executor)}设置的Executor回调
+     */
+    Custom
+}
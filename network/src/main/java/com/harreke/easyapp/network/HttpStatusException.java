@@ -0,0 +1,29 @@
+package com.harreke.easyapp.network;
+
+import java.io.IOException;
+
+/**
+ 由 huoqisheng 于 2017/5/2 创建
+
+ 服务器返回了非2xx的Http状态码
+
+ 与网络错误区分开，调用方可以根据{@link #getCode()}与{@link RetryPolicy#isRetryable(int)}决定是否重试
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private int mCode;
+
+    public HttpStatusException(int code, String message) {
+        super(message);
+        mCode = code;
+    }
+
+    /**
+     获得Http状态码
+
+     @return 状态码
+     */
+    public int getCode() {
+        return mCode;
+    }
+}
@@ -0,0 +1,27 @@
+package com.harreke.easyapp.network;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+/**
+ 由 huoqisheng 于 2017/5/2 创建
+
+ 图片的租约
+
+ 租约持有图片在缓存中的一个引用，释放前图片不会被回收或复用，调用者可以直接使用而不需要复制；
+ 用完后必须调用{@link #release()}，借出租约的执行器被回收时（如所属的FrameworkHelper被销毁）会自动释放其借出的所有租约
+ */
+public interface IBitmapLease {
+    /**
+     获得图片
+
+     @return 图片，租约已释放时为null
+     */
+    @Nullable
+    Bitmap get();
+
+    /**
+     释放租约，释放后不能再使用{@link #get()}返回的图片，重复调用没有影响
+     */
+    void release();
+}
@@ -0,0 +1,51 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ 由 huoqisheng 于 2017/4/27 创建
+
+ 分块上传协议
+
+ 由{@link ChunkUploader}在工作线程中同步调用，实现类决定每一步请求的地址与格式，也可以替换为本地的模拟实现；
+ 除{@link #upload}外的方法都只在一个线程中调用，{@link #upload}可能同时在多个线程中调用；
+ 服务器返回错误状态码时应抛出{@link HttpStatusException}，以便按{@link RetryPolicy#isRetryable(int)}判断分块是否重试
+ */
+public interface IChunkUploadProtocol {
+    /**
+     完成上传，所有分块都被确认后调用
+
+     @param session 会话标识
+     @param checksumList 按分块顺序排列的校验值
+
+     @return 服务器的结果，作为上传的结果返回
+     */
+    String commit(@NonNull String session, @NonNull List<String> checksumList) throws IOException;
+
+    /**
+     开始一次新的上传
+
+     @param fileName 文件名
+     @param length 文件长度
+     @param chunkSize 分块大小，最后一块可能较小
+
+     @return 会话标识，续传时会被再次使用
+     */
+    @NonNull
+    String open(@NonNull String fileName, long length, int chunkSize) throws IOException;
+
+    /**
+     上传一个分块，正常返回即表示服务器已确认收到
+
+     @param session 会话标识
+     @param index 分块的序号
+     @param offset 分块在文件中的位置
+     @param data 分块内容，只有前length个字节有效
+     @param length 分块长度
+     @param checksum 分块的校验值（MD5的十六进制字符串）
+     */
+    void upload(@NonNull String session, int index, long offset, @NonNull byte[] data, int length, @NonNull String checksum) throws IOException;
+}
@@ -0,0 +1,79 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+
+/**
+ 由 huoqisheng 于 2017/4/25 创建
+
+ 网络耗时统计
+
+ 按请求的标签（{@link RequestBuilder#getTag()}）分别统计请求各阶段的耗时，每个阶段保存为一个{@link NetworkHistogram}；
+ 默认关闭，关闭时不产生任何统计开销
+ */
+public interface INetworkMetrics {
+    /**
+     以文本形式导出所有统计，每行为一个标签的一个阶段
+
+     @return 文本
+     */
+    @NonNull
+    String export();
+
+    boolean isEnabled();
+
+    /**
+     清空所有统计
+     */
+    void reset();
+
+    /**
+     开启或关闭统计，只影响之后发起的请求
+
+     @param enabled 是否开启
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     获得统计的快照，之后的统计不会影响快照
+
+     @return 标签到各阶段耗时分布的映射
+     */
+    @NonNull
+    Map<String, Map<Phase, NetworkHistogram>> snapshot();
+
+    /**
+     请求的阶段
+     */
+    enum Phase {
+        /**
+         解析域名，使用已有连接时没有此阶段
+         */
+        Dns,
+        /**
+         建立连接，包括TLS握手
+         */
+        Connect,
+        /**
+         TLS握手
+         */
+        Tls,
+        /**
+         写出请求头与请求体
+         */
+        RequestWrite,
+        /**
+         请求写出后到收到响应头（首字节时间）
+         */
+        FirstByte,
+        /**
+         读取响应体
+         */
+        BodyRead,
+        /**
+         结果发送到主线程后到开始处理的等待时间
+         */
+        Delivery
+    }
+}
@@ -0,0 +1,37 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.InputStream;
+
+/**
+ 由 huoqisheng 于 2017/5/1 创建
+
+ 从缓冲池中借出的只读响应体
+
+ 内容保存在若干可重用的分段中，不会复制成一个完整的byte[]；使用完后必须调用{@link #release()}将分段归还缓冲池，
+ 释放后不能再读取，之前打开的输入流也会失效。未释放的缓冲区只会被垃圾回收，不会回到缓冲池
+ */
+public interface IPooledBuffer {
+    /**
+     获得内容长度
+
+     @return 字节数
+     */
+    long getLength();
+
+    /**
+     打开一个从头读取内容的输入流，可多次打开，各输入流互不影响
+
+     @return 输入流
+
+     @throws IllegalStateException 缓冲区已释放
+     */
+    @NonNull
+    InputStream openStream();
+
+    /**
+     将缓冲区归还缓冲池，重复调用没有影响
+     */
+    void release();
+}
@@ -0,0 +1,43 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+/**
+ 由 huoqisheng 于 2017/4/29 创建
+
+ 预取器
+
+ 提前以最低优先级获取用户接下来可能打开的页面，只在没有其他请求、且网络不计流量或足够快时执行；
+ 之后相同的GET请求会直接使用预取的结果（只使用一次），不再请求网络。预取的结果总大小受字节预算限制
+ */
+public interface IPrefetcher {
+    /**
+     取消分组中尚未完成的预取，并丢弃该分组已预取的结果
+
+     @param group 分组
+     */
+    void cancel(@NonNull String group);
+
+    /**
+     预取请求，有Body的请求会被忽略
+
+     @param group 分组，用于一次取消多个预取
+     @param requestBuilder 请求构造器
+     */
+    void prefetch(@NonNull String group, @NonNull RequestBuilder requestBuilder);
+
+    /**
+     预取链接
+
+     @param group 分组，用于一次取消多个预取
+     @param requestUrl 链接
+     */
+    void prefetch(@NonNull String group, @NonNull String requestUrl);
+
+    /**
+     设置字节预算，已预取结果的总大小达到预算后不再预取，直到结果被使用或丢弃
+
+     @param byteBudget 字节预算
+     */
+    void setByteBudget(long byteBudget);
+}
@@ -0,0 +1,22 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.Nullable;
+
+/**
+ 由 huoqisheng 于 2017/4/21 创建
+
+ 带有失败原因的Http请求回调接口
+
+ 请求失败时只会回调{@link #onFailure(Throwable, int)}，不会再回调{@link #onFailure()}
+
+ @param <RESULT> 目标类型
+ */
+public interface IRequestErrorCallback<RESULT> extends IRequestCallback<RESULT> {
+    /**
+     请求失败
+
+     @param cause 失败原因，未知时为null
+     @param attempts 已尝试的次数
+     */
+    void onFailure(@Nullable Throwable cause, int attempts);
+}
@@ -0,0 +1,28 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ 由 huoqisheng 于 2017/4/24 创建
+
+ 离线请求队列
+
+ 加入队列的请求会被持久化，网络可用时按加入的顺序在后台发送，发送成功前即使应用被关闭也不会丢失
+ */
+public interface IRequestOutbox {
+    /**
+     加入请求
+
+     @param requestBuilder 请求构造器，加入时保存当前的Header、Query、Body与MultiPart，之后的修改不影响已加入的请求
+     @param idempotencyKey 幂等键，相同幂等键的请求只会保留一个，并通过Idempotency-Key头发送给服务器；为null时自动生成
+     */
+    void enqueue(@NonNull RequestBuilder requestBuilder, @Nullable String idempotencyKey);
+
+    /**
+     获得等待发送的请求数量
+
+     @return 请求数量
+     */
+    int size();
+}
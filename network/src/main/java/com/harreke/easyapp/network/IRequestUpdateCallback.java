@@ -0,0 +1,20 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/28 创建
+
+ 支持结果更新的Http请求回调接口
+
+ 用于先返回旧结果再刷新的请求：{@link #onSuccess(Object)}可能先收到保存的旧结果，网络返回的新结果与旧结果不同时再回调{@link #onUpdated(Object)}，
+ 相同时不再回调
+
+ @param <RESULT> 目标类型
+ */
+public interface IRequestUpdateCallback<RESULT> extends IRequestCallback<RESULT> {
+    /**
+     网络返回的新结果与之前返回的旧结果不同
+
+     @param result 新结果
+     */
+    void onUpdated(RESULT result);
+}
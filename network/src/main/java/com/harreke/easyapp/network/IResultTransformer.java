@@ -0,0 +1,27 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+/**
+ 由 huoqisheng 于 2017/4/30 创建
+
+ 请求结果的变换
+
+ 在工作线程中、结果分发之前执行，用于解析、过滤或预先计算显示内容，使分发到主线程的只有可以直接使用的数据；
+ 变换后的类型可以与请求结果不同（如把字符串解析为模型）。相同的请求被合并时，多个执行器可能收到同一个结果对象
+
+ @param <RESULT> 请求结果的类型
+ @param <OUT> 变换后的类型
+ */
+public interface IResultTransformer<RESULT, OUT> {
+    /**
+     变换结果
+
+     @param result 请求结果
+
+     @return 变换后的结果
+
+     @throws Exception 变换失败，请求按失败回调，失败原因为该异常
+     */
+    OUT transform(@NonNull RESULT result) throws Exception;
+}
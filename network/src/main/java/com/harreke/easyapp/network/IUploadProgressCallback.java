@@ -0,0 +1,19 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/26 创建
+
+ 上传进度回调
+
+ {@link #onProgress(long, long)}报告整个请求体的进度，{@link #onPartProgress(int, long, long)}报告每个文件部分的进度
+ */
+public interface IUploadProgressCallback extends IProgressCallback {
+    /**
+     文件部分的上传进度
+
+     @param index 文件部分的序号，与加入的顺序一致
+     @param progress 已上传的字节数
+     @param total 总字节数，未知时为-1
+     */
+    void onPartProgress(int index, long progress, long total);
+}
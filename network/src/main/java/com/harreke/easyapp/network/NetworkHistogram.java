@@ -0,0 +1,94 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/25 创建
+
+ 耗时分布（毫秒）
+
+ 第0个区间为[0, 1)，第i个区间为[2^(i-1), 2^i)，最后一个区间没有上限；创建后不可修改
+ */
+public final class NetworkHistogram {
+    private long[] mBuckets;
+    private long mCount;
+    private long mMax;
+    private long mSum;
+
+    public NetworkHistogram(long[] buckets, long count, long sum, long max) {
+        mBuckets = buckets.clone();
+        mCount = count;
+        mSum = sum;
+        mMax = max;
+    }
+
+    public int getBucketCount() {
+        return mBuckets.length;
+    }
+
+    /**
+     获得区间的上限（不包括）
+
+     @param index 区间的序号
+
+     @return 上限，最后一个区间为Long.MAX_VALUE
+     */
+    public long getBucketUpperBound(int index) {
+        return index >= mBuckets.length - 1 ? Long.MAX_VALUE : 1L << index;
+    }
+
+    /**
+     获得落在区间中的次数
+
+     @param index 区间的序号
+
+     @return 次数
+     */
+    public long getBucketValue(int index) {
+        return mBuckets[index];
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mCount == 0L ? 0L : mSum / mCount;
+    }
+
+    /**
+     获得百分位数的估计值，即累计次数达到该百分位的区间的上限，不超过最大值
+
+     @param percentile 百分位，0到100
+
+     @return 耗时
+     */
+    public long getPercentile(double percentile) {
+        long target = (long) Math.ceil(mCount * percentile / 100d);
+        long count = 0L;
+
+        if (mCount == 0L) {
+            return 0L;
+        }
+        for (int i = 0; i < mBuckets.length; i++) {
+            count += mBuckets[i];
+            if (count >= target) {
+                return Math.min(getBucketUpperBound(i), mMax);
+            }
+        }
+
+        return mMax;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + mCount + " mean=" + getMean() + " p50=" + getPercentile(50d) + " p90=" + getPercentile(90d) + " p99=" + getPercentile(99d) +
+                " max=" + mMax;
+    }
+}
@@ -6,8 +6,6 @@ import android.text.TextUtils;
 import com.orhanobut.logger.Logger;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -15,17 +13,24 @@ import java.util.TreeMap;
  由 Harreke（harreke@live.cn） 创建于 2014/07/24
 
  Http请求构造器，支持GET和POST请求
+
+ 参数拼接后的字符串与完整链接会被缓存，只有参数、主机或路径改变时才重新生成
  */
 public class RequestBuilder {
     public final static String CHARSET_UTF8 = "UTF-8";
     private final static String TAG = "RequestBuilder";
-    private Map<String, String> mBodyMap = new TreeMap<>();
-    private Map<String, String> mHeaderMap = new TreeMap<>();
+    private ParamMap mBodyMap = new ParamMap();
+    private CachePolicy mCachePolicy = CachePolicy.Default;
+    private long mGzipThreshold = -1L;
+    private ParamMap mHeaderMap = new ParamMap();
     private String mHost;
-    private Map<String, String> mMultiPartMap = new TreeMap<>();
+    private ParamMap mMultiPartMap = new ParamMap();
     private String mPath;
-    private Map<String, String> mQueryMap = new TreeMap<>();
+    private RequestPriority mPriority = RequestPriority.Normal;
+    private ParamMap mQueryMap = new ParamMap();
     private String mTag;
+    private String mUrl = null;
+    private int mUrlQueryVersion = -1;
 
     public RequestBuilder(@NonNull String tag) {
         mTag = tag;
@@ -60,7 +65,7 @@ public class RequestBuilder {
         String body = String.valueOf(value);
 
         try {
-            mBodyMap.put(key, URLEncoder.encode(body, charsetName));
+            mBodyMap.put(key, UrlEncoder.encode(body, charsetName));
         } catch (UnsupportedEncodingException e) {
             mBodyMap.put(key, body);
         }
@@ -97,7 +102,7 @@ public class RequestBuilder {
         String header = String.valueOf(value);
 
         try {
-            mHeaderMap.put(key, URLEncoder.encode(header, charsetName));
+            mHeaderMap.put(key, UrlEncoder.encode(header, charsetName));
         } catch (UnsupportedEncodingException e) {
             mHeaderMap.put(key, header);
         }
@@ -115,7 +120,7 @@ public class RequestBuilder {
         String multiPart = String.valueOf(value);
 
         try {
-            mMultiPartMap.put(key, URLEncoder.encode(multiPart, charsetName));
+            mMultiPartMap.put(key, UrlEncoder.encode(multiPart, charsetName));
         } catch (UnsupportedEncodingException e) {
             mMultiPartMap.put(key, multiPart);
         }
@@ -138,7 +143,7 @@ public class RequestBuilder {
         String query = String.valueOf(value);
 
         try {
-            mQueryMap.put(key, URLEncoder.encode(query, charsetName));
+            mQueryMap.put(key, UrlEncoder.encode(query, charsetName));
         } catch (UnsupportedEncodingException e) {
             mQueryMap.put(key, query);
         }
@@ -160,23 +165,6 @@ public class RequestBuilder {
         return this;
     }
 
-    private String buildString(@NonNull Map<String, String> map) {
-        Iterator<String> iterator = map.keySet().iterator();
-        StringBuilder result = new StringBuilder();
-        String key;
-
-        if (iterator.hasNext()) {
-            key = iterator.next();
-            result.append(key).append("=").append(map.get(key));
-            while (iterator.hasNext()) {
-                key = iterator.next();
-                result.append("&").append(key).append("=").append(map.get(key));
-            }
-        }
-
-        return result.toString();
-    }
-
     public void clear() {
         clearHeader();
         clearQuery();
@@ -208,7 +196,25 @@ public class RequestBuilder {
     }
 
     public final String getBodyString() {
-        return buildString(mBodyMap);
+        return mBodyMap.getString();
+    }
+
+    /**
+     获得请求的缓存策略
+
+     @return 缓存策略
+     */
+    public final CachePolicy getCachePolicy() {
+        return mCachePolicy;
+    }
+
+    /**
+     获得压缩请求体的阈值
+
+     @return 阈值（字节），小于0时不压缩
+     */
+    public final long getGzipThreshold() {
+        return mGzipThreshold;
     }
 
     public final Map<String, String> getHeader() {
@@ -220,7 +226,7 @@ public class RequestBuilder {
     }
 
     public final String getHeaderString() {
-        return buildString(mHeaderMap);
+        return mHeaderMap.getString();
     }
 
     public String getHost() {
@@ -232,13 +238,22 @@ public class RequestBuilder {
     }
 
     public final String getMultiPartString() {
-        return buildString(mMultiPartMap);
+        return mMultiPartMap.getString();
     }
 
     public String getPath() {
         return mPath;
     }
 
+    /**
+     获得请求的优先级
+
+     @return 优先级
+     */
+    public final RequestPriority getPriority() {
+        return mPriority;
+    }
+
     public final Map<String, String> getQuery() {
         return mQueryMap;
     }
@@ -253,7 +268,7 @@ public class RequestBuilder {
      @return 请求GET传参
      */
     public final String getQueryString() {
-        return buildString(mQueryMap);
+        return mQueryMap.getString();
     }
 
     /**
@@ -271,9 +286,23 @@ public class RequestBuilder {
      @return 请求完整链接
      */
     public final String getUrl() {
-        String queryString = getQueryString();
+        if (mUrl == null || mUrlQueryVersion != mQueryMap.mVersion) {
+            String queryString = getQueryString();
+            int pathLength = mPath == null ? 0 : mPath.length();
+            StringBuilder builder = new StringBuilder(String.valueOf(mHost).length() + pathLength + queryString.length() + 1);
+
+            builder.append(mHost);
+            if (pathLength > 0) {
+                builder.append(mPath);
+            }
+            if (queryString.length() > 0) {
+                builder.append('?').append(queryString);
+            }
+            mUrl = builder.toString();
+            mUrlQueryVersion = mQueryMap.mVersion;
+        }
 
-        return getBaseUrl() + (TextUtils.isEmpty(queryString) ? "" : "?" + queryString);
+        return mUrl;
     }
 
     public boolean hasBody() {
@@ -306,17 +335,68 @@ public class RequestBuilder {
         Logger.e(print.toString());
     }
 
+    /**
+     设置请求的缓存策略
+
+     二进制请求没有请求参数时默认以空表单POST，设置了{@link CachePolicy#Default}以外的策略时才改用GET，以便使用缓存
+
+     @param cachePolicy 缓存策略
+
+     {@link CachePolicy}
+
+     @return 自身
+     */
+    public final RequestBuilder setCachePolicy(@NonNull CachePolicy cachePolicy) {
+        mCachePolicy = cachePolicy;
+
+        return this;
+    }
+
+    /**
+     设置压缩请求体的阈值
+
+     表单请求体的长度不小于阈值时以gzip压缩后发送（Content-Encoding: gzip），需要服务器支持；
+     较小的请求体压缩收益很小，不值得消耗CPU，上传文件的请求体不会被压缩
+
+     @param threshold 阈值（字节），小于0时不压缩，默认不压缩
+
+     @return 自身
+     */
+    public final RequestBuilder setGzipThreshold(long threshold) {
+        mGzipThreshold = threshold;
+
+        return this;
+    }
+
     public void setHost(String host) {
         mHost = host;
+        mUrl = null;
     }
 
     public void setPath(String path) {
         mPath = path;
+        mUrl = null;
+    }
+
+    /**
+     设置请求的优先级
+
+     @param priority 优先级
+
+     {@link RequestPriority}
+
+     @return 自身
+     */
+    public final RequestBuilder setPriority(@NonNull RequestPriority priority) {
+        mPriority = priority;
+
+        return this;
     }
 
     public final RequestBuilder setUrl(String url) {
         mHost = url;
         mPath = "";
+        mUrl = null;
 
         return this;
     }
@@ -332,7 +412,81 @@ public class RequestBuilder {
     public final RequestBuilder setUrl(String host, String path) {
         mHost = host;
         mPath = path;
+        mUrl = null;
 
         return this;
     }
+
+    /**
+     通过Url模板设置请求的基准Url
+
+     @param template Url模板
+     @param values 占位符的值
+
+     @return 自身
+     */
+    public final RequestBuilder setUrl(@NonNull UrlTemplate template, @NonNull Object... values) {
+        return setUrl(template.expand(values));
+    }
+
+    /**
+     参数表，修改时使拼接好的字符串失效
+
+     通过{@link #entrySet()}等视图直接修改时不会失效，应使用put、remove与clear
+     */
+    private static class ParamMap extends TreeMap<String, String> {
+        private static final long serialVersionUID = 1L;
+        private String mString = null;
+        private int mVersion = 0;
+
+        @Override
+        public void clear() {
+            super.clear();
+            invalidate();
+        }
+
+        private String getString() {
+            if (mString == null) {
+                if (isEmpty()) {
+                    mString = "";
+                } else {
+                    StringBuilder builder = new StringBuilder(size() * 16);
+                    for (Map.Entry<String, String> entry : entrySet()) {
+                        if (builder.length() > 0) {
+                            builder.append('&');
+                        }
+                        builder.append(entry.getKey()).append('=').append(entry.getValue());
+                    }
+                    mString = builder.toString();
+                }
+            }
+
+            return mString;
+        }
+
+        private void invalidate() {
+            mString = null;
+            mVersion++;
+        }
+
+        @Override
+        public String put(String key, String value) {
+            invalidate();
+
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends String> map) {
+            invalidate();
+            super.putAll(map);
+        }
+
+        @Override
+        public String remove(Object key) {
+            invalidate();
+
+            return super.remove(key);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.harreke.easyapp.network;
+
+import android.content.Context;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.harreke.easyapp.common.interf.IDestroyable;
+import com.harreke.easyapp.common.singleton.CommonHandler;
+import com.harreke.easyapp.network.executor.BinaryExecutor;
+import com.harreke.easyapp.network.executor.RequestExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ 由 huoqisheng 于 2017/4/18 创建
+
+ 请求组
+
+ 同时发起多个请求，全部结束（或满足{@link Mode}的条件）后在主线程中回调一次，耗时取决于最慢的请求而不是所有请求耗时之和；
+ 组内请求的回调由请求组接管，请求组只能执行一次（请求结束后执行器会被销毁），再次执行时抛出IllegalStateException；
+ 通过{@link #cancel()}可以一次取消所有请求。回调实现了{@link IRequestErrorCallback}时，失败原因为第一个失败的请求的原因，超时时为TimeoutException。
+ 请求组只能在主线程中使用；组内请求即使设置了其他分发策略，结果也会先转到主线程再更新请求组的状态
+ */
+public class RequestGroup implements IRequestExecutor, IDestroyable {
+    private int mAttempts = 0;
+    private IRequestCallback<Result> mCallback = null;
+    private Throwable mCause = null;
+    private List<RequestExecutor<?>> mExecutorList = new ArrayList<>();
+    private boolean mExecuted = false;
+    private boolean mExecuting = false;
+    private Mode mMode;
+    private int mPending = 0;
+    private Result mResult = null;
+    private long mTimeout = 0L;
+    private Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onTimeout();
+        }
+    };
+
+    public RequestGroup(@NonNull Mode mode) {
+        mMode = mode;
+    }
+
+    /**
+     添加请求
+
+     @param executor 请求执行器，不需要设置回调；不能是设置了{@link BinaryExecutor#pooledCallback(IRequestCallback)}的执行器
+
+     @return 自身
+     */
+    public RequestGroup add(@NonNull RequestExecutor<?> executor) {
+        mExecutorList.add(executor);
+
+        return this;
+    }
+
+    @Override
+    public void cancel() {
+        if (mExecuting) {
+            finish();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        cancel();
+        mCallback = null;
+        mExecutorList.clear();
+        mResult = null;
+    }
+
+    /**
+     在主线程中同时发起组内所有请求，只能调用一次
+
+     @param context 上下文
+     */
+    @SuppressWarnings("unchecked")
+    public void execute(@NonNull Context context) {
+        if (mExecuted) {
+            throw new IllegalStateException("RequestGroup can only be executed once");
+        }
+        mExecuted = true;
+        for (RequestExecutor<?> executor : mExecutorList) {
+            if (executor instanceof BinaryExecutor && ((BinaryExecutor) executor).isPooled()) {
+                // 缓冲池模式的结果不会回调请求组接管的回调，请求组将无法结束
+                throw new IllegalArgumentException("Pooled binary requests cannot join a RequestGroup");
+            }
+        }
+        int size = mExecutorList.size();
+        mResult = new Result(size);
+        if (size == 0) {
+            deliver(mMode == Mode.All);
+            return;
+        }
+        mExecuting = true;
+        mPending = size;
+        if (mTimeout > 0L) {
+            CommonHandler.getInstance().postDelayed(mTimeoutRunnable, mTimeout);
+        }
+        for (int i = 0; i < size; i++) {
+            RequestExecutor<Object> executor = (RequestExecutor<Object>) mExecutorList.get(i);
+            executor.requestCallback(new MemberCallback(mResult, i));
+        }
+        // 先设置好所有回调再发起请求
+        for (int i = 0; i < size && mExecuting; i++) {
+            mExecutorList.get(i).execute(context);
+        }
+    }
+
+    private void deliver(boolean success) {
+        IRequestCallback<Result> callback = mCallback;
+        Result result = mResult;
+
+        if (callback != null) {
+            if (success) {
+                callback.onSuccess(result);
+            } else if (callback instanceof IRequestErrorCallback) {
+                ((IRequestErrorCallback<Result>) callback).onFailure(mCause, mAttempts);
+            } else {
+                callback.onFailure();
+            }
+        }
+    }
+
+    private void finish() {
+        mExecuting = false;
+        CommonHandler.getInstance().remove(mTimeoutRunnable);
+        for (RequestExecutor<?> executor : mExecutorList) {
+            executor.cancel();
+        }
+    }
+
+    /**
+     设置请求组的回调，在主线程中执行
+
+     @param callback 回调
+
+     @return 自身
+     */
+    public RequestGroup groupCallback(@NonNull IRequestCallback<Result> callback) {
+        mCallback = callback;
+
+        return this;
+    }
+
+    @Override
+    public boolean isExecuting() {
+        return mExecuting;
+    }
+
+    private void onMemberFinish(@NonNull Result result, int index, boolean success, Object value, Throwable cause, int attempts) {
+        if (!mExecuting || result != mResult) {
+            return;
+        }
+        if (!success && mCause == null && mAttempts == 0) {
+            // 只记录第一个失败的请求
+            mCause = cause;
+            mAttempts = attempts;
+        }
+        result.mSuccess[index] = success;
+        result.mValues[index] = value;
+        mPending--;
+        switch (mMode) {
+            case All:
+                if (!success) {
+                    finish();
+                    deliver(false);
+                } else if (mPending == 0) {
+                    finish();
+                    deliver(true);
+                }
+                break;
+            case Any:
+                if (mPending == 0) {
+                    finish();
+                    deliver(result.getSuccessCount() > 0);
+                }
+                break;
+            case FirstSuccess:
+                if (success) {
+                    finish();
+                    deliver(true);
+                } else if (mPending == 0) {
+                    finish();
+                    deliver(false);
+                }
+                break;
+        }
+    }
+
+    private void onTimeout() {
+        if (!mExecuting) {
+            return;
+        }
+        finish();
+        mCause = new TimeoutException("RequestGroup timed out after " + mTimeout + "ms");
+        mAttempts = 1;
+        // 超时后只有任意模式会返回已成功的部分结果
+        deliver(mMode == Mode.Any && mResult.getSuccessCount() > 0);
+    }
+
+    /**
+     设置超时时间，超时后取消未完成的请求
+
+     @param timeout 超时时间（毫秒），不大于0时不超时
+
+     @return 自身
+     */
+    public RequestGroup timeout(long timeout) {
+        mTimeout = timeout;
+
+        return this;
+    }
+
+    /**
+     请求组的完成条件
+     */
+    public enum Mode {
+        /**
+         所有请求都成功时才成功，任意一个请求失败时立即失败并取消其余请求
+         */
+        All,
+        /**
+         等待所有请求结束，至少一个请求成功时成功，结果中包含每个请求是否成功
+         */
+        Any,
+        /**
+         第一个成功的请求返回时立即成功并取消其余请求，所有请求都失败或超时时失败
+         */
+        FirstSuccess
+    }
+
+    /**
+     请求组的结果，顺序与添加请求的顺序一致
+     */
+    public static class Result {
+        private boolean[] mSuccess;
+        private Object[] mValues;
+
+        private Result(int size) {
+            mSuccess = new boolean[size];
+            mValues = new Object[size];
+        }
+
+        /**
+         获得请求的结果
+
+         @param index 请求的序号
+
+         @return 结果，请求未成功时为null
+         */
+        @SuppressWarnings("unchecked")
+        public <RESULT> RESULT get(int index) {
+            return (RESULT) mValues[index];
+        }
+
+        public int getSuccessCount() {
+            int count = 0;
+
+            for (boolean success : mSuccess) {
+                if (success) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        public boolean isSuccess(int index) {
+            return mSuccess[index];
+        }
+
+        public int size() {
+            return mValues.length;
+        }
+    }
+
+    /**
+     组内请求的回调，可能在任意线程中回调，转到主线程后再更新请求组
+     */
+    private class MemberCallback implements IRequestErrorCallback<Object> {
+        /**
+         是否已回调过，同一请求的重复回调（如先返回旧结果再刷新）被忽略，只在主线程中读写
+         */
+        private boolean mFinished = false;
+        private int mIndex;
+        private Result mOwner;
+
+        private MemberCallback(@NonNull Result owner, int index) {
+            mOwner = owner;
+            mIndex = index;
+        }
+
+        @Override
+        public void onFailure() {
+            onFailure(null, 1);
+        }
+
+        @Override
+        public void onFailure(@Nullable Throwable cause, int attempts) {
+            post(false, null, cause, attempts);
+        }
+
+        @Override
+        public void onSuccess(Object result) {
+            post(true, result, null, 0);
+        }
+
+        private void post(final boolean success, final Object value, final Throwable cause, final int attempts) {
+            Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    if (!mFinished) {
+                        mFinished = true;
+                        onMemberFinish(mOwner, mIndex, success, value, cause, attempts);
+                    }
+                }
+            };
+
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                runnable.run();
+            } else {
+                CommonHandler.getInstance().post(runnable);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.harreke.easyapp.network;
+
+/**
+ 由 huoqisheng 于 2017/4/17 创建
+
+ 请求的优先级，等待中的请求按优先级从高到低发起
+ */
+public enum RequestPriority {
+    /**
+     用户正在等待的请求
+     */
+    Immediate,
+    /**
+     普通请求
+     */
+    Normal,
+    /**
+     预加载请求，只占用部分并发数
+     */
+    Prefetch;
+
+    /**
+     降低一级优先级，用于界面不可见时
+
+     @return 降级后的优先级
+     */
+    public RequestPriority demote() {
+        return this == Immediate ? Normal : Prefetch;
+    }
+}
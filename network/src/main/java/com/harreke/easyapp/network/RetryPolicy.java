@@ -0,0 +1,139 @@
+package com.harreke.easyapp.network;
+
+import java.util.Random;
+
+/**
+ 由 huoqisheng 于 2017/4/21 创建
+
+ 请求的重试策略
+
+ 网络错误，或服务器返回408、429与5xx时按指数退避重试，每次等待时间在退避时间的一半到全部之间随机；
+ 默认只重试GET请求。第一次请求超过对冲延迟仍未返回时会再发起一次相同的请求，使用先返回的结果；
+ 默认的对冲延迟取该请求标签在网络耗时统计中的p95，统计未开启或样本不足时不对冲。
+ 重试用尽后服务器仍返回可重试的状态码时，以{@link HttpStatusException}作为失败结果
+ */
+public class RetryPolicy {
+    /**
+     根据网络耗时统计决定对冲延迟
+     */
+    public static final long HEDGE_DELAY_AUTO = -1L;
+    private static final Random RANDOM = new Random();
+    private long mBaseDelay = 500L;
+    private long mHedgeDelay = HEDGE_DELAY_AUTO;
+    private int mMaxAttempts = 3;
+    private long mMaxDelay = 10000L;
+    private boolean mRetryNonIdempotent = false;
+
+    /**
+     设置第一次重试前的退避时间，之后每次翻倍
+
+     @param baseDelay 退避时间（毫秒）
+
+     @return 自身
+     */
+    public RetryPolicy baseDelay(long baseDelay) {
+        mBaseDelay = baseDelay;
+
+        return this;
+    }
+
+    /**
+     判断是否可以再次尝试
+
+     @param idempotent 请求是否幂等
+     @param attempts 已尝试的次数
+
+     @return 是否可以再次尝试
+     */
+    public boolean canRetry(boolean idempotent, int attempts) {
+        return (idempotent || mRetryNonIdempotent) && attempts < mMaxAttempts;
+    }
+
+    /**
+     获得第attempts次尝试失败后的等待时间
+
+     @param attempts 已尝试的次数
+
+     @return 等待时间（毫秒）
+     */
+    public long getDelay(int attempts) {
+        long delay = mBaseDelay << Math.min(Math.max(attempts - 1, 0), 20);
+        if (delay <= 0L || delay > mMaxDelay) {
+            delay = mMaxDelay;
+        }
+        long half = delay / 2L;
+
+        return half + (long) (RANDOM.nextDouble() * (delay - half));
+    }
+
+    public long getHedgeDelay() {
+        return mHedgeDelay;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     设置对冲延迟，默认为{@link #HEDGE_DELAY_AUTO}
+
+     @param hedgeDelay 对冲延迟（毫秒），为{@link #HEDGE_DELAY_AUTO}时使用统计的p95，为0时不对冲
+
+     @return 自身
+     */
+    public RetryPolicy hedgeDelay(long hedgeDelay) {
+        mHedgeDelay = hedgeDelay;
+
+        return this;
+    }
+
+    /**
+     判断Http状态码是否可以重试
+
+     @param code 状态码
+
+     @return 是否可以重试
+     */
+    public boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500 && code != 501;
+    }
+
+    /**
+     设置最大尝试次数，包括第一次请求
+
+     @param maxAttempts 最大尝试次数
+
+     @return 自身
+     */
+    public RetryPolicy maxAttempts(int maxAttempts) {
+        mMaxAttempts = maxAttempts;
+
+        return this;
+    }
+
+    /**
+     设置退避时间的上限
+
+     @param maxDelay 退避时间上限（毫秒）
+
+     @return 自身
+     */
+    public RetryPolicy maxDelay(long maxDelay) {
+        mMaxDelay = maxDelay;
+
+        return this;
+    }
+
+    /**
+     设置是否重试非幂等请求（POST）
+
+     @param retryNonIdempotent 是否重试
+
+     @return 自身
+     */
+    public RetryPolicy retryNonIdempotent(boolean retryNonIdempotent) {
+        mRetryNonIdempotent = retryNonIdempotent;
+
+        return this;
+    }
+}
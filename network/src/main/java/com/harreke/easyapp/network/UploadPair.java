@@ -4,7 +4,10 @@ import java.io.File;
 
 /**
  * 由 Harreke（harreke@live.cn） 创建于 2015/04/30
+ *
+ * @deprecated 执行器已改为接收多个{@link UploadPart}，使用{@link UploadPart}代替
  */
+@Deprecated
 public class UploadPair {
     public String contentType;
     public File file;
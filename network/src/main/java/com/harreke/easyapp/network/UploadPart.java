@@ -0,0 +1,94 @@
+package com.harreke.easyapp.network;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ 由 huoqisheng 于 2017/4/26 创建
+
+ 上传的文件部分，内容来自文件、输入流或ContentProvider的Uri
+
+ 上传时内容按固定大小逐段读取并写出，不会整体读入内存；输入流只能读取一次，包含输入流的请求失败后不会重试
+ */
+public class UploadPart {
+    private long mContentLength;
+    private String mContentType;
+    private File mFile = null;
+    private String mFileName;
+    private InputStream mInputStream = null;
+    private String mName;
+    private Uri mUri = null;
+
+    public UploadPart(@NonNull String name, @NonNull String contentType, @NonNull File file) {
+        mName = name;
+        mContentType = contentType;
+        mFile = file;
+        mFileName = file.getName();
+        mContentLength = -1L;
+    }
+
+    /**
+     @param contentLength 内容长度，未知时为-1
+     */
+    public UploadPart(@NonNull String name, @NonNull String fileName, @NonNull String contentType, @NonNull InputStream inputStream,
+            long contentLength) {
+        mName = name;
+        mFileName = fileName;
+        mContentType = contentType;
+        mInputStream = inputStream;
+        mContentLength = contentLength;
+    }
+
+    public UploadPart(@NonNull String name, @NonNull String fileName, @NonNull String contentType, @NonNull Uri uri) {
+        mName = name;
+        mFileName = fileName;
+        mContentType = contentType;
+        mUri = uri;
+        mContentLength = -1L;
+    }
+
+    /**
+     获得输入流的内容长度，文件与Uri的长度在上传时获取
+
+     @return 内容长度，未知时为-1
+     */
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public String getFileName() {
+        return mFileName;
+    }
+
+    public InputStream getInputStream() {
+        return mInputStream;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public Uri getUri() {
+        return mUri;
+    }
+
+    /**
+     是否可以重复读取，只有输入流不能重复读取
+
+     @return 是否可以重复读取
+     */
+    public boolean isRepeatable() {
+        return mInputStream == null;
+    }
+}
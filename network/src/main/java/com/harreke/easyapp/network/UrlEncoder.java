@@ -0,0 +1,99 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ 由 huoqisheng 于 2017/4/20 创建
+
+ 轻量的Url编码
+
+ 不需要编码的字符串直接返回原对象；UTF-8编码直接写入调用方的StringBuilder，其他编码仍使用{@link URLEncoder}
+ */
+class UrlEncoder {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UrlEncoder() {
+    }
+
+    /**
+     按UTF-8编码后写入
+
+     @param builder 目标
+     @param value 原始内容
+     @param path 是否为路径片段，路径中的空格编码为%20，否则编码为+
+     */
+    static void append(@NonNull StringBuilder builder, @NonNull String value, boolean path) {
+        int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+            } else if (c == ' ' && !path) {
+                builder.append('+');
+            } else if (c < 0x80) {
+                appendByte(builder, c);
+            } else if (c < 0x800) {
+                appendByte(builder, 0xC0 | (c >> 6));
+                appendByte(builder, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(builder, 0xF0 | (codePoint >> 18));
+                appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            } else {
+                // 孤立的代理字符与URLEncoder一样按'?'处理
+                if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    appendByte(builder, '?');
+                } else {
+                    appendByte(builder, 0xE0 | (c >> 12));
+                    appendByte(builder, 0x80 | ((c >> 6) & 0x3F));
+                    appendByte(builder, 0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    private static void appendByte(@NonNull StringBuilder builder, int b) {
+        builder.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+    }
+
+    /**
+     编码表单或Query的值，与{@link URLEncoder#encode(String, String)}结果一致
+
+     @param value 原始内容
+     @param charsetName 编码名称
+
+     @return 编码后的内容，不需要编码时返回原对象
+     */
+    static String encode(@NonNull String value, @NonNull String charsetName) throws UnsupportedEncodingException {
+        if (isUnreserved(value)) {
+            return value;
+        }
+        if (!RequestBuilder.CHARSET_UTF8.equalsIgnoreCase(charsetName)) {
+            return URLEncoder.encode(value, charsetName);
+        }
+        StringBuilder builder = new StringBuilder(value.length() * 3);
+        append(builder, value, false);
+
+        return builder.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+
+    private static boolean isUnreserved(@NonNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.harreke.easyapp.network;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ 由 huoqisheng 于 2017/4/20 创建
+
+ 预编译的Url模板
+
+ 模板中用{name}表示占位符，例如"https://api.example.com/users/{id}/repos"；
+ 模板只解析一次，展开时按占位符出现的顺序传入参数，参数按路径片段编码后直接写入同一个StringBuilder
+ */
+public final class UrlTemplate {
+    private int mLiteralLength = 0;
+    private String[] mNames;
+    private String[] mSegments;
+
+    private UrlTemplate(@NonNull String template) {
+        List<String> segmentList = new ArrayList<>();
+        List<String> nameList = new ArrayList<>();
+        int start = 0;
+        int open;
+
+        while ((open = template.indexOf('{', start)) != -1) {
+            int close = template.indexOf('}', open);
+            if (close == -1) {
+                throw new IllegalArgumentException("Unclosed placeholder in " + template);
+            }
+            segmentList.add(template.substring(start, open));
+            nameList.add(template.substring(open + 1, close));
+            start = close + 1;
+        }
+        segmentList.add(template.substring(start));
+        mSegments = segmentList.toArray(new String[segmentList.size()]);
+        mNames = nameList.toArray(new String[nameList.size()]);
+        for (String segment : mSegments) {
+            mLiteralLength += segment.length();
+        }
+    }
+
+    /**
+     编译Url模板
+
+     @param template 模板
+
+     @return Url模板
+     */
+    public static UrlTemplate compile(@NonNull String template) {
+        return new UrlTemplate(template);
+    }
+
+    /**
+     展开模板
+
+     @param values 占位符的值，数量与顺序必须与模板一致
+
+     @return 完整的Url
+     */
+    public String expand(@NonNull Object... values) {
+        if (values.length != mNames.length) {
+            throw new IllegalArgumentException("Expected " + mNames.length + " values but got " + values.length);
+        }
+        StringBuilder builder = new StringBuilder(mLiteralLength + values.length * 16);
+
+        for (int i = 0; i < values.length; i++) {
+            builder.append(mSegments[i]);
+            UrlEncoder.append(builder, String.valueOf(values[i]), true);
+        }
+        builder.append(mSegments[values.length]);
+
+        return builder.toString();
+    }
+
+    /**
+     获得占位符名称
+
+     @param index 占位符的序号
+
+     @return 名称
+     */
+    public String getName(int index) {
+        return mNames[index];
+    }
+
+    public int getNameCount() {
+        return mNames.length;
+    }
+}
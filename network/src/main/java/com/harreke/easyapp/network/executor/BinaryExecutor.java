@@ -2,14 +2,67 @@ package com.harreke.easyapp.network.executor;
 
 import android.support.annotation.NonNull;
 
+import com.harreke.easyapp.network.DeliveryPolicy;
+import com.harreke.easyapp.network.IPooledBuffer;
 import com.harreke.easyapp.network.IProgressCallback;
 import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IResultTransformer;
 import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RetryPolicy;
+
+import java.util.concurrent.Executor;
 
 /**
  由 Harreke（harreke@live.cn） 创建于 2015/04/29
  */
 public abstract class BinaryExecutor extends RequestExecutor<byte[]> {
+    private IRequestCallback<IPooledBuffer> mPooledCallback = null;
+
+    @Override
+    public BinaryExecutor deliverOn(@NonNull DeliveryPolicy deliveryPolicy) {
+        return (BinaryExecutor) super.deliverOn(deliveryPolicy);
+    }
+
+    @Override
+    public BinaryExecutor deliverOn(@NonNull Executor executor) {
+        return (BinaryExecutor) super.deliverOn(executor);
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        mPooledCallback = null;
+    }
+
+    protected IRequestCallback<IPooledBuffer> getPooledCallback() {
+        return mPooledCallback;
+    }
+
+    /**
+     是否使用缓冲池读取响应体
+
+     @return 是否设置了{@link #pooledCallback(IRequestCallback)}
+     */
+    public boolean isPooled() {
+        return mPooledCallback != null;
+    }
+
+    /**
+     使用缓冲池读取响应体，只有OkHttp执行器支持
+
+     设置后响应体被读入缓冲池中可重用的分段，成功时通过该回调返回{@link IPooledBuffer}，不再回调{@link #requestCallback(IRequestCallback)}，
+     也不执行{@link #transform(IResultTransformer)}与{@link #transform(IResultTransformer, IRequestCallback)}；缓冲区由回调负责释放。缓冲池模式的请求不会与其他请求合并
+
+     @param pooledCallback 回调
+
+     @return 自身
+     */
+    public BinaryExecutor pooledCallback(@NonNull IRequestCallback<IPooledBuffer> pooledCallback) {
+        mPooledCallback = pooledCallback;
+
+        return this;
+    }
+
     @Override
     public BinaryExecutor progressCallback(@NonNull IProgressCallback progressCallback) {
         return (BinaryExecutor) super.progressCallback(progressCallback);
@@ -29,4 +82,19 @@ public abstract class BinaryExecutor extends RequestExecutor<byte[]> {
     public BinaryExecutor requestCallback(@NonNull IRequestCallback<byte[]> requestCallback) {
         return (BinaryExecutor) super.requestCallback(requestCallback);
     }
+
+    @Override
+    public BinaryExecutor retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        return (BinaryExecutor) super.retryPolicy(retryPolicy);
+    }
+
+    @Override
+    public BinaryExecutor transform(@NonNull IResultTransformer<byte[], byte[]> resultTransformer) {
+        return (BinaryExecutor) super.transform(resultTransformer);
+    }
+
+    @Override
+    public <OUT> BinaryExecutor transform(@NonNull IResultTransformer<byte[], OUT> resultTransformer, @NonNull IRequestCallback<OUT> requestCallback) {
+        return (BinaryExecutor) super.transform(resultTransformer, requestCallback);
+    }
 }
\ No newline at end of file
@@ -2,18 +2,38 @@ package com.harreke.easyapp.network.executor;
 
 import android.support.annotation.NonNull;
 
+import com.harreke.easyapp.network.DeliveryPolicy;
+import com.harreke.easyapp.network.IProgressCallback;
+import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IResultTransformer;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RetryPolicy;
+
 import java.io.File;
+import java.util.concurrent.Executor;
 
 /**
  * 由 Harreke（harreke@live.cn） 创建于 2015/04/29
  */
 public abstract class FileExecutor extends RequestExecutor<File> {
     private File mFile;
+    private int mMaxSegments = 1;
+
+    @Override
+    public FileExecutor deliverOn(@NonNull DeliveryPolicy deliveryPolicy) {
+        return (FileExecutor) super.deliverOn(deliveryPolicy);
+    }
+
+    @Override
+    public FileExecutor deliverOn(@NonNull Executor executor) {
+        return (FileExecutor) super.deliverOn(executor);
+    }
 
     @Override
     public void destroy() {
         super.destroy();
         mFile = null;
+        mMaxSegments = 1;
     }
 
     public FileExecutor download(@NonNull File file) {
@@ -25,4 +45,58 @@ public abstract class FileExecutor extends RequestExecutor<File> {
     protected File getFile() {
         return mFile;
     }
+
+    protected int getMaxSegments() {
+        return mMaxSegments;
+    }
+
+    @Override
+    public FileExecutor progressCallback(@NonNull IProgressCallback progressCallback) {
+        return (FileExecutor) super.progressCallback(progressCallback);
+    }
+
+    @Override
+    public FileExecutor request(@NonNull RequestBuilder requestBuilder) {
+        return (FileExecutor) super.request(requestBuilder);
+    }
+
+    @Override
+    public FileExecutor request(@NonNull String requestUrl) {
+        return (FileExecutor) super.request(requestUrl);
+    }
+
+    @Override
+    public FileExecutor requestCallback(@NonNull IRequestCallback<File> requestCallback) {
+        return (FileExecutor) super.requestCallback(requestCallback);
+    }
+
+    @Override
+    public FileExecutor retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        return (FileExecutor) super.retryPolicy(retryPolicy);
+    }
+
+    /**
+     使用多个连接分段并行下载
+
+     服务器不支持Range时自动退回单连接下载；实际连接数会根据测得的吞吐量在1到maxSegments之间自适应
+
+     @param maxSegments 最大并行连接数，小于等于1时使用单连接下载
+
+     @return 自身
+     */
+    public FileExecutor segments(int maxSegments) {
+        mMaxSegments = maxSegments;
+
+        return this;
+    }
+
+    @Override
+    public FileExecutor transform(@NonNull IResultTransformer<File, File> resultTransformer) {
+        return (FileExecutor) super.transform(resultTransformer);
+    }
+
+    @Override
+    public <OUT> FileExecutor transform(@NonNull IResultTransformer<File, OUT> resultTransformer, @NonNull IRequestCallback<OUT> requestCallback) {
+        return (FileExecutor) super.transform(resultTransformer, requestCallback);
+    }
 }
\ No newline at end of file
@@ -4,34 +4,85 @@ import android.graphics.Bitmap;
 import android.support.annotation.NonNull;
 import android.widget.ImageView;
 
+import com.harreke.easyapp.network.IBitmapLease;
 import com.harreke.easyapp.network.IProgressCallback;
 import com.harreke.easyapp.network.IRequestCallback;
 import com.harreke.easyapp.network.RequestBuilder;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  由 Harreke（harreke@live.cn） 创建于 2015/04/29
  */
 public abstract class ImageExecutor extends RequestExecutor<Bitmap> {
+    private Bitmap.Config mBitmapConfig = null;
     private ImageView mImageView;
+    private IRequestCallback<IBitmapLease> mLeaseCallback = null;
+    /**
+     借出的租约，执行器被回收时全部释放
+     */
+    private final List<IBitmapLease> mLeaseList = new ArrayList<>();
     private int mLoadingImageId = 0;
+    private int mMaxHeight = 0;
+    private int mMaxWidth = 0;
     private int mRetryImageId = 0;
 
+    /**
+     设置解码使用的图片格式，如{@link Bitmap.Config#RGB_565}，每个像素只占ARGB_8888的一半内存但没有透明度
+
+     @param bitmapConfig 图片格式
+
+     @return 自身
+     */
+    public ImageExecutor bitmapConfig(@NonNull Bitmap.Config bitmapConfig) {
+        mBitmapConfig = bitmapConfig;
+
+        return this;
+    }
+
     @Override
     public void destroy() {
         super.destroy();
+        mBitmapConfig = null;
         mImageView = null;
+        mLeaseCallback = null;
         mLoadingImageId = 0;
+        mMaxHeight = 0;
+        mMaxWidth = 0;
         mRetryImageId = 0;
     }
 
+    /**
+     获得解码使用的图片格式
+
+     @return 图片格式，未设置时为null，使用图片库的默认格式
+     */
+    protected Bitmap.Config getBitmapConfig() {
+        return mBitmapConfig;
+    }
+
     protected ImageView getImageView() {
         return mImageView;
     }
 
+    protected IRequestCallback<IBitmapLease> getLeaseCallback() {
+        return mLeaseCallback;
+    }
+
     protected int getLoadingImageId() {
         return mLoadingImageId;
     }
 
+    protected int getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    protected int getMaxWidth() {
+        return mMaxWidth;
+    }
+
     protected int getRetryImageId() {
         return mRetryImageId;
     }
@@ -42,12 +93,56 @@ public abstract class ImageExecutor extends RequestExecutor<Bitmap> {
         return this;
     }
 
+    /**
+     以租约的形式返回图片
+
+     设置后成功时通过该回调返回{@link IBitmapLease}，不再回调{@link #requestCallback(IRequestCallback)}；
+     租约由回调负责释放，执行器被回收时仍未释放的租约会被自动释放
+
+     @param leaseCallback 回调
+
+     @return 自身
+     */
+    public ImageExecutor leaseCallback(@NonNull IRequestCallback<IBitmapLease> leaseCallback) {
+        mLeaseCallback = leaseCallback;
+
+        return this;
+    }
+
     public ImageExecutor loadingImageId(int loadingImageId) {
         mLoadingImageId = loadingImageId;
 
         return this;
     }
 
+    /**
+     设置解码后图片的最大尺寸，图片会按比例缩小到不超过该尺寸；未设置时按目标ImageView测量后的尺寸缩小
+
+     @param maxWidth 最大宽度（像素），不大于0时不限制
+     @param maxHeight 最大高度（像素），不大于0时不限制
+
+     @return 自身
+     */
+    public ImageExecutor maxSize(int maxWidth, int maxHeight) {
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+
+        return this;
+    }
+
+    @Override
+    protected void onRecycle() {
+        List<IBitmapLease> leaseList;
+
+        synchronized (mLeaseList) {
+            leaseList = new ArrayList<>(mLeaseList);
+            mLeaseList.clear();
+        }
+        for (IBitmapLease lease : leaseList) {
+            lease.release();
+        }
+    }
+
     @Override
     public ImageExecutor progressCallback(@NonNull IProgressCallback progressCallback) {
         return (ImageExecutor) super.progressCallback(progressCallback);
@@ -73,4 +168,21 @@ public abstract class ImageExecutor extends RequestExecutor<Bitmap> {
 
         return this;
     }
+
+    /**
+     记录借出的租约，以便执行器被回收时释放，同时移除已释放的租约
+
+     @param lease 租约
+     */
+    protected final void trackLease(@NonNull IBitmapLease lease) {
+        synchronized (mLeaseList) {
+            Iterator<IBitmapLease> iterator = mLeaseList.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get() == null) {
+                    iterator.remove();
+                }
+            }
+            mLeaseList.add(lease);
+        }
+    }
 }
\ No newline at end of file
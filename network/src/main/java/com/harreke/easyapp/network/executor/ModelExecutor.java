@@ -0,0 +1,107 @@
+package com.harreke.easyapp.network.executor;
+
+import android.support.annotation.NonNull;
+
+import com.harreke.easyapp.network.DeliveryPolicy;
+import com.harreke.easyapp.network.IProgressCallback;
+import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IResultTransformer;
+import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RetryPolicy;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
+
+/**
+ 由 huoqisheng 于 2017/4/10 创建
+
+ 直接将响应解析为目标类型的执行器
+
+ 解析在工作线程中边读取边进行，回调时只传递解析完成的对象
+
+ @param <MODEL> 目标类型
+ */
+public abstract class ModelExecutor<MODEL> extends RequestExecutor<MODEL> {
+    private Type mModelType;
+
+    @Override
+    public ModelExecutor<MODEL> deliverOn(@NonNull DeliveryPolicy deliveryPolicy) {
+        return (ModelExecutor<MODEL>) super.deliverOn(deliveryPolicy);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> deliverOn(@NonNull Executor executor) {
+        return (ModelExecutor<MODEL>) super.deliverOn(executor);
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        mModelType = null;
+    }
+
+    protected Type getModelType() {
+        return mModelType;
+    }
+
+    /**
+     设置目标类型
+
+     @param modelClass 目标类型
+
+     @return 自身
+     */
+    public ModelExecutor<MODEL> model(@NonNull Class<MODEL> modelClass) {
+        mModelType = modelClass;
+
+        return this;
+    }
+
+    /**
+     设置目标类型，用于泛型类型
+
+     @param modelType 目标类型，如TypeReference.getType()
+
+     @return 自身
+     */
+    public ModelExecutor<MODEL> model(@NonNull Type modelType) {
+        mModelType = modelType;
+
+        return this;
+    }
+
+    @Override
+    public ModelExecutor<MODEL> progressCallback(@NonNull IProgressCallback progressCallback) {
+        return (ModelExecutor<MODEL>) super.progressCallback(progressCallback);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> request(@NonNull RequestBuilder requestBuilder) {
+        return (ModelExecutor<MODEL>) super.request(requestBuilder);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> request(@NonNull String requestUrl) {
+        return (ModelExecutor<MODEL>) super.request(requestUrl);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> requestCallback(@NonNull IRequestCallback<MODEL> requestCallback) {
+        return (ModelExecutor<MODEL>) super.requestCallback(requestCallback);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        return (ModelExecutor<MODEL>) super.retryPolicy(retryPolicy);
+    }
+
+    @Override
+    public ModelExecutor<MODEL> transform(@NonNull IResultTransformer<MODEL, MODEL> resultTransformer) {
+        return (ModelExecutor<MODEL>) super.transform(resultTransformer);
+    }
+
+    @Override
+    public <OUT> ModelExecutor<MODEL> transform(@NonNull IResultTransformer<MODEL, OUT> resultTransformer, @NonNull IRequestCallback<OUT> requestCallback) {
+        return (ModelExecutor<MODEL>) super.transform(resultTransformer, requestCallback);
+    }
+}
@@ -2,35 +2,110 @@ package com.harreke.easyapp.network.executor;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.harreke.easyapp.common.interf.IDestroyable;
+import com.harreke.easyapp.network.DeliveryPolicy;
 import com.harreke.easyapp.network.IProgressCallback;
 import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IRequestErrorCallback;
 import com.harreke.easyapp.network.IRequestExecutor;
+import com.harreke.easyapp.network.IResultTransformer;
 import com.harreke.easyapp.network.RequestBuilder;
+import com.harreke.easyapp.network.RequestPriority;
+import com.harreke.easyapp.network.RetryPolicy;
+
+import java.util.concurrent.Executor;
 
 /**
  由 Harreke（harreke@live.cn） 创建于 2015/04/30
  */
 public abstract class RequestExecutor<RESULT> implements IRequestExecutor, IDestroyable {
+    private Executor mDeliveryExecutor = null;
+    private DeliveryPolicy mDeliveryPolicy = DeliveryPolicy.Main;
+    private boolean mDemoted = false;
     private IProgressCallback mProgressCallback;
     private RequestBuilder mRequestBuilder;
-    private IRequestCallback<RESULT> mRequestCallback;
+    /**
+     接收最终结果的回调，设置了带类型的变换时接收的是变换后的结果
+     */
+    private IRequestCallback<?> mRequestCallback;
+    private IResultTransformer<RESULT, ?> mResultTransformer = null;
+    private RetryPolicy mRetryPolicy = null;
+
+    /**
+     设置结果的分发线程，只有OkHttp执行器支持
+
+     @param deliveryPolicy 分发线程，{@link DeliveryPolicy#Custom}需要通过{@link #deliverOn(Executor)}设置
+
+     @return 自身
+     */
+    public RequestExecutor<RESULT> deliverOn(@NonNull DeliveryPolicy deliveryPolicy) {
+        mDeliveryPolicy = deliveryPolicy;
+        if (deliveryPolicy != DeliveryPolicy.Custom) {
+            mDeliveryExecutor = null;
+        }
+
+        return this;
+    }
+
+    /**
+     在指定的Executor中分发结果，只有OkHttp执行器支持
+
+     @param executor 执行回调的Executor
+
+     @return 自身
+     */
+    public RequestExecutor<RESULT> deliverOn(@NonNull Executor executor) {
+        mDeliveryExecutor = executor;
+        mDeliveryPolicy = DeliveryPolicy.Custom;
+
+        return this;
+    }
 
     @Override
     public void destroy() {
         cancel();
+        mDeliveryExecutor = null;
+        mDeliveryPolicy = DeliveryPolicy.Main;
         mProgressCallback = null;
         mRequestBuilder = null;
         mRequestCallback = null;
+        mResultTransformer = null;
+        mRetryPolicy = null;
     }
 
     public abstract void execute(@NonNull Context context);
 
+    /**
+     获得分发结果的Executor
+
+     @return 分发策略为{@link DeliveryPolicy#Custom}时为设置的Executor，否则为null
+     */
+    protected Executor getDeliveryExecutor() {
+        return mDeliveryExecutor;
+    }
+
+    protected DeliveryPolicy getDeliveryPolicy() {
+        return mDeliveryPolicy;
+    }
+
     protected IRequestExecutor getExecutor() {
         return this;
     }
 
+    /**
+     获得请求实际使用的优先级，被降级时比请求构造器中设置的优先级低一级
+
+     @return 优先级
+     */
+    protected RequestPriority getPriority() {
+        RequestBuilder requestBuilder = getRequestBuilder();
+        RequestPriority priority = requestBuilder != null ? requestBuilder.getPriority() : RequestPriority.Normal;
+
+        return mDemoted ? priority.demote() : priority;
+    }
+
     protected IProgressCallback getProgressCallback() {
         return mProgressCallback;
     }
@@ -39,8 +114,14 @@ public abstract class RequestExecutor<RESULT> implements IRequestExecutor, IDest
         return mRequestBuilder;
     }
 
+    /**
+     获得请求回调，只能在不支持{@link #transform(IResultTransformer, IRequestCallback)}的执行器中使用
+
+     @return 请求回调
+     */
+    @SuppressWarnings("unchecked")
     protected IRequestCallback<RESULT> getRequestCallback() {
-        return mRequestCallback;
+        return (IRequestCallback<RESULT>) mRequestCallback;
     }
 
     protected String getRequestUrl() {
@@ -49,12 +130,87 @@ public abstract class RequestExecutor<RESULT> implements IRequestExecutor, IDest
         return requestBuilder != null ? requestBuilder.getUrl() : null;
     }
 
-    public RequestExecutor progressCallback(@NonNull IProgressCallback progressCallback) {
+    /**
+     获得接收最终结果的回调，结果通过{@link #notifySuccess(IRequestCallback, Object)}分发
+
+     @return 回调，设置了带类型的变换时为接收变换后结果的回调
+     */
+    protected IRequestCallback<?> getResultCallback() {
+        return mRequestCallback;
+    }
+
+    protected IResultTransformer<RESULT, ?> getResultTransformer() {
+        return mResultTransformer;
+    }
+
+    /**
+     获得重试策略
+
+     @return 重试策略，未设置时为null，不重试
+     */
+    protected RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    public boolean isDemoted() {
+        return mDemoted;
+    }
+
+    /**
+     回调请求失败，回调实现了{@link IRequestErrorCallback}时同时传递失败原因与尝试次数
+
+     @param requestCallback 回调
+     @param cause 失败原因
+     @param attempts 已尝试的次数
+     */
+    protected final void notifyFailure(@NonNull IRequestCallback<?> requestCallback, @Nullable Throwable cause, int attempts) {
+        if (requestCallback instanceof IRequestErrorCallback) {
+            ((IRequestErrorCallback<?>) requestCallback).onFailure(cause, attempts);
+        } else {
+            requestCallback.onFailure();
+        }
+    }
+
+    /**
+     回调请求成功
+
+     @param resultCallback 由{@link #getResultCallback()}获得的回调
+     @param result 由{@link #transformResult(Object)}得到的最终结果
+     */
+    @SuppressWarnings("unchecked")
+    protected final void notifySuccess(@NonNull IRequestCallback<?> resultCallback, Object result) {
+        // 最终结果的类型与回调的类型由transform保证一致
+        ((IRequestCallback<Object>) resultCallback).onSuccess(result);
+    }
+
+    /**
+     优先级发生变化，正在等待或执行的请求应更新调度顺序
+     */
+    protected void onPriorityChanged() {
+    }
+
+    /**
+     执行器被回收，释放只有回收时才释放的资源
+     */
+    protected void onRecycle() {
+    }
+
+    public RequestExecutor<RESULT> progressCallback(@NonNull IProgressCallback progressCallback) {
         mProgressCallback = progressCallback;
 
         return this;
     }
 
+    /**
+     销毁执行器并释放只有回收时才释放的资源，回收后不能再使用该执行器
+
+     执行器不会被放回池中复用，调用者仍持有的引用不会影响其他请求
+     */
+    public final void recycle() {
+        destroy();
+        onRecycle();
+    }
+
     public RequestExecutor<RESULT> request(@NonNull RequestBuilder requestBuilder) {
         mRequestBuilder = requestBuilder;
 
@@ -70,4 +226,77 @@ public abstract class RequestExecutor<RESULT> implements IRequestExecutor, IDest
 
         return this;
     }
+
+    /**
+     设置重试策略，只有OkHttp执行器支持
+
+     @param retryPolicy 重试策略
+
+     @return 自身
+     */
+    public RequestExecutor<RESULT> retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+
+        return this;
+    }
+
+    /**
+     设置在工作线程中执行的结果变换，只有OkHttp执行器支持；变换后的结果仍回调{@link #requestCallback(IRequestCallback)}
+
+     @param resultTransformer 结果变换
+
+     @return 自身
+     */
+    public RequestExecutor<RESULT> transform(@NonNull IResultTransformer<RESULT, RESULT> resultTransformer) {
+        mResultTransformer = resultTransformer;
+
+        return this;
+    }
+
+    /**
+     设置在工作线程中执行的、改变结果类型的变换，只有OkHttp执行器支持
+
+     变换后的结果回调给此处的回调，代替{@link #requestCallback(IRequestCallback)}设置的回调，两者共用同一个回调，后设置的生效；
+     请求组接管回调后收到的是变换后的结果
+
+     @param resultTransformer 结果变换
+     @param requestCallback 接收变换后结果的回调
+     @param <OUT> 变换后的类型
+
+     @return 自身
+     */
+    public <OUT> RequestExecutor<RESULT> transform(@NonNull IResultTransformer<RESULT, OUT> resultTransformer,
+            @NonNull IRequestCallback<OUT> requestCallback) {
+        mResultTransformer = resultTransformer;
+        mRequestCallback = requestCallback;
+
+        return this;
+    }
+
+    /**
+     在工作线程中对结果执行变换，未设置变换或结果为null时返回原结果
+
+     @param result 请求结果
+
+     @return 变换后的结果
+
+     @throws Exception 变换失败
+     */
+    protected final Object transformResult(RESULT result) throws Exception {
+        IResultTransformer<RESULT, ?> resultTransformer = mResultTransformer;
+
+        return resultTransformer == null || result == null ? result : resultTransformer.transform(result);
+    }
+
+    /**
+     设置是否降级，所属界面不可见时由框架自动降级
+
+     @param demoted 是否降级
+     */
+    public void setDemoted(boolean demoted) {
+        if (mDemoted != demoted) {
+            mDemoted = demoted;
+            onPriorityChanged();
+        }
+    }
 }
\ No newline at end of file
@@ -2,28 +2,52 @@ package com.harreke.easyapp.network.executor;
 
 import android.support.annotation.NonNull;
 
+import com.harreke.easyapp.network.DeliveryPolicy;
 import com.harreke.easyapp.network.IProgressCallback;
 import com.harreke.easyapp.network.IRequestCallback;
+import com.harreke.easyapp.network.IRequestUpdateCallback;
+import com.harreke.easyapp.network.IResultTransformer;
+import com.harreke.easyapp.network.IUploadProgressCallback;
 import com.harreke.easyapp.network.RequestBuilder;
-import com.harreke.easyapp.network.UploadPair;
+import com.harreke.easyapp.network.RetryPolicy;
+import com.harreke.easyapp.network.UploadPart;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  由 Harreke（harreke@live.cn） 创建于 2015/04/29
  */
 public abstract class StringExecutor extends RequestExecutor<String> {
     public static final boolean LOG = true;
-    private UploadPair mUploadPair = null;
+    private boolean mStaleWhileRevalidate = false;
+    private List<UploadPart> mUploadPartList = new ArrayList<>();
+
+    @Override
+    public StringExecutor deliverOn(@NonNull DeliveryPolicy deliveryPolicy) {
+        return (StringExecutor) super.deliverOn(deliveryPolicy);
+    }
+
+    @Override
+    public StringExecutor deliverOn(@NonNull Executor executor) {
+        return (StringExecutor) super.deliverOn(executor);
+    }
 
     @Override
     public void destroy() {
         super.destroy();
-        mUploadPair = null;
+        mStaleWhileRevalidate = false;
+        mUploadPartList.clear();
+    }
+
+    protected List<UploadPart> getUploadPartList() {
+        return mUploadPartList;
     }
 
-    protected UploadPair getUploadPair() {
-        return mUploadPair;
+    public boolean isStaleWhileRevalidate() {
+        return mStaleWhileRevalidate;
     }
 
     @Override
@@ -49,8 +73,63 @@ public abstract class StringExecutor extends RequestExecutor<String> {
         return (StringExecutor) super.requestCallback(requestCallback);
     }
 
+    @Override
+    public StringExecutor retryPolicy(@NonNull RetryPolicy retryPolicy) {
+        return (StringExecutor) super.retryPolicy(retryPolicy);
+    }
+
+    /**
+     设置是否先返回保存的旧结果再刷新
+
+     开启后执行时先在主线程中以上次成功（2xx）的结果回调{@link IRequestCallback#onSuccess(Object)}，同时请求网络；
+     新结果与旧结果不同时回调{@link IRequestUpdateCallback#onUpdated(Object)}（不是该接口时不再回调），相同时不再回调；
+     已返回旧结果时网络请求失败也不再回调。上传文件的请求不支持此模式
+
+     @param staleWhileRevalidate 是否开启
+
+     @return 自身
+     */
+    public StringExecutor staleWhileRevalidate(boolean staleWhileRevalidate) {
+        mStaleWhileRevalidate = staleWhileRevalidate;
+
+        return this;
+    }
+
+    @Override
+    public StringExecutor transform(@NonNull IResultTransformer<String, String> resultTransformer) {
+        return (StringExecutor) super.transform(resultTransformer);
+    }
+
+    @Override
+    public <OUT> StringExecutor transform(@NonNull IResultTransformer<String, OUT> resultTransformer, @NonNull IRequestCallback<OUT> requestCallback) {
+        return (StringExecutor) super.transform(resultTransformer, requestCallback);
+    }
+
+    /**
+     添加上传的文件，可多次调用以在一个请求中上传多个文件；
+     添加的文件在{@link #destroy()}时才会清空，不销毁而再次执行时会重新上传之前添加的文件
+
+     @param key 表单名称
+     @param type 文件的MIME类型
+     @param file 文件
+
+     @return 自身
+     */
     public StringExecutor upload(@NonNull String key, @NonNull String type, @NonNull File file) {
-        mUploadPair = new UploadPair(key, type, file);
+        return upload(new UploadPart(key, type, file));
+    }
+
+    /**
+     添加上传的文件部分，可多次调用以在一个请求中上传多个文件部分；
+     进度回调为{@link IUploadProgressCallback}时同时报告每个文件部分的进度。
+     文件部分会一直保留到{@link #destroy()}，复用执行器上传其他文件前需要先销毁
+
+     @param uploadPart 文件部分
+
+     @return 自身
+     */
+    public StringExecutor upload(@NonNull UploadPart uploadPart) {
+        mUploadPartList.add(uploadPart);
 
         return this;
     }
@@ -4,8 +4,11 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
 import com.alibaba.fastjson.TypeReference;
 
+import java.io.Reader;
+import java.lang.reflect.Type;
 import java.util.List;
 
 
@@ -61,6 +64,29 @@ public class JsonUtil {
         return object;
     }
 
+    /**
+     从字符流中边读取边解析，不会先将整个Json读取为字符串
+
+     @param reader 字符流，解析完毕后会被关闭
+     @param typeOfT 目标类型，可以是Class，或{@link TypeReference#getType()}
+
+     @return 解析结果，解析失败时为null
+     */
+    public static <T> T toObject(Reader reader, Type typeOfT) {
+        JSONReader jsonReader = new JSONReader(reader);
+        T object;
+
+        try {
+            object = jsonReader.readObject(typeOfT);
+        } catch (JSONException e) {
+            object = null;
+        } finally {
+            jsonReader.close();
+        }
+
+        return object;
+    }
+
     public static <T> T toObject(String json, Class<T> classOfT) {
         T object;
 